@@ -658,6 +658,8 @@ public abstract class Ast {
             private final Optional<Ast.Expression> offset;
             private final String name;
             private Environment.Variable variable = null;
+            private int depth = -1;
+            private int slot = -1;
 
             public Access(Optional<Ast.Expression> offset, String name) {
                 this.offset = offset;
@@ -683,6 +685,28 @@ public abstract class Ast {
                 this.variable = variable;
             }
 
+            /**
+             * The number of scopes up from the current one containing the
+             * variable, as computed by a {@link Resolver}, or -1 if it has not
+             * been resolved. This is not part of equality.
+             */
+            public int getDepth() {
+                return depth;
+            }
+
+            /**
+             * The slot of the variable in its {@link Scope}, or -1 if it has
+             * not been resolved.
+             */
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int depth, int slot) {
+                this.depth = depth;
+                this.slot = slot;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getVariable().getType();
@@ -713,6 +737,7 @@ public abstract class Ast {
             private final String name;
             private final List<Ast.Expression> arguments;
             private Environment.Function function = null;
+            private Scope.FunctionHandle handle = null;
 
             public Function(String name, List<Ast.Expression> arguments) {
                 this.name = name;
@@ -738,6 +763,20 @@ public abstract class Ast {
                 this.function = function;
             }
 
+            /**
+             * The function this call last resolved to when interpreted, or
+             * null if it has not been called. This is a cache which must be
+             * checked with {@link Scope.FunctionHandle#isValid(Scope)}, and is
+             * not part of equality.
+             */
+            public Scope.FunctionHandle getHandle() {
+                return handle;
+            }
+
+            public void setHandle(Scope.FunctionHandle handle) {
+                this.handle = handle;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getFunction().getReturnType();
@@ -0,0 +1,274 @@
+package plc.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static plc.project.AstWriter.*;
+
+/**
+ * Reads an AST written by {@link AstWriter}. Variables read back have the
+ * value {@link Environment#NIL} and functions read back return it, as when
+ * they are defined by the {@link Analyzer}.
+ */
+public final class AstReader {
+
+    private final DataInput in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Environment.Variable> variables = new ArrayList<>();
+    private final List<Environment.Function> functions = new ArrayList<>();
+
+    public AstReader(DataInput in) {
+        this.in = in;
+    }
+
+    /**
+     * Returns the source encoded in the byte array. The bytes are read
+     * without the locking of {@link ByteArrayInputStream}, which
+     * would otherwise dominate the time spent reading.
+     */
+    public static Ast.Source deserialize(byte[] bytes) {
+        ByteArrayInputStream input = new ByteArrayInputStream(bytes) {
+
+            @Override
+            public int read() {
+                return pos < count ? buf[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (pos >= count) {
+                    return -1;
+                }
+                length = Math.min(length, count - pos);
+                System.arraycopy(buf, pos, bytes, offset, length);
+                pos += length;
+                return length;
+            }
+
+        };
+        try {
+            return new AstReader(new DataInputStream(input)).readSource();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a source written by {@link AstWriter#write(Ast.Source)}, throwing
+     * an {@link IOException} if the input is not in the format.
+     */
+    public Ast.Source readSource() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Input is not a serialized AST.");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported AST format version " + version + ".");
+        }
+        return read(Ast.Source.class);
+    }
+
+    private <T extends Ast> T read(Class<T> type) throws IOException {
+        Ast ast = read();
+        if (!type.isInstance(ast)) {
+            throw new IOException("Expected " + type.getSimpleName() + " but found " + ast.getClass().getSimpleName() + ".");
+        }
+        return type.cast(ast);
+    }
+
+    private Ast read() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case SOURCE:
+                return new Ast.Source(list(Ast.Global.class), list(Ast.Function.class));
+            case GLOBAL: {
+                Ast.Global ast = new Ast.Global(string(), string(), in.readBoolean(), optional(Ast.Expression.class));
+                ast.setVariable(variable());
+                return ast;
+            }
+            case FUNCTION: {
+                Ast.Function ast = new Ast.Function(string(), strings(), strings(), optionalString(), list(Ast.Statement.class));
+                ast.setFunction(function());
+                return ast;
+            }
+            case EXPRESSION_STATEMENT:
+                return new Ast.Statement.Expression(read(Ast.Expression.class));
+            case DECLARATION: {
+                Ast.Statement.Declaration ast = new Ast.Statement.Declaration(string(), optionalString(), optional(Ast.Expression.class));
+                ast.setVariable(variable());
+                return ast;
+            }
+            case ASSIGNMENT:
+                return new Ast.Statement.Assignment(read(Ast.Expression.class), read(Ast.Expression.class));
+            case IF:
+                return new Ast.Statement.If(read(Ast.Expression.class), list(Ast.Statement.class), list(Ast.Statement.class));
+            case SWITCH:
+                return new Ast.Statement.Switch(read(Ast.Expression.class), list(Ast.Statement.Case.class));
+            case CASE:
+                return new Ast.Statement.Case(optional(Ast.Expression.class), list(Ast.Statement.class));
+            case WHILE:
+                return new Ast.Statement.While(read(Ast.Expression.class), list(Ast.Statement.class));
+            case RETURN:
+                return new Ast.Statement.Return(read(Ast.Expression.class));
+            case LITERAL: {
+                Ast.Expression.Literal ast = new Ast.Expression.Literal(literal());
+                ast.setType(type());
+                return ast;
+            }
+            case GROUP: {
+                Ast.Expression.Group ast = new Ast.Expression.Group(read(Ast.Expression.class));
+                ast.setType(type());
+                return ast;
+            }
+            case BINARY: {
+                Ast.Expression.Binary ast = new Ast.Expression.Binary(string(), read(Ast.Expression.class), read(Ast.Expression.class));
+                ast.setType(type());
+                return ast;
+            }
+            case ACCESS: {
+                Ast.Expression.Access ast = new Ast.Expression.Access(optional(Ast.Expression.class), string());
+                ast.setVariable(variable());
+                return ast;
+            }
+            case FUNCTION_EXPRESSION: {
+                Ast.Expression.Function ast = new Ast.Expression.Function(string(), list(Ast.Expression.class));
+                ast.setFunction(function());
+                return ast;
+            }
+            case LIST: {
+                Ast.Expression.PlcList ast = new Ast.Expression.PlcList(list(Ast.Expression.class));
+                ast.setType(type());
+                return ast;
+            }
+            default:
+                throw new IOException("Unknown node tag " + tag + ".");
+        }
+    }
+
+    private <T extends Ast> Optional<T> optional(Class<T> type) throws IOException {
+        return in.readBoolean() ? Optional.of(read(type)) : Optional.empty();
+    }
+
+    private <T extends Ast> List<T> list(Class<T> type) throws IOException {
+        int size = (int) unsigned();
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(read(type));
+        }
+        return list;
+    }
+
+    private Object literal() throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NIL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case INTEGER:
+                return BigInteger.valueOf(signed());
+            case BIG_INTEGER:
+                return new BigInteger(bytes());
+            case DECIMAL:
+                return new BigDecimal(new BigInteger(bytes()), (int) signed());
+            case CHARACTER:
+                return (char) unsigned();
+            case STRING:
+                return new String(bytes(), StandardCharsets.UTF_8);
+            default:
+                throw new IOException("Unknown literal tag " + tag + ".");
+        }
+    }
+
+    private Environment.Type type() throws IOException {
+        return in.readBoolean() ? Environment.getType(string()) : null;
+    }
+
+    private Environment.Variable variable() throws IOException {
+        int index = (int) unsigned();
+        if (index == 0) {
+            return null;
+        } else if (index <= variables.size()) {
+            return variables.get(index - 1);
+        }
+        Environment.Variable variable = new Environment.Variable(string(), string(), Environment.getType(string()), in.readBoolean(), Environment.NIL);
+        variables.add(variable);
+        return variable;
+    }
+
+    private Environment.Function function() throws IOException {
+        int index = (int) unsigned();
+        if (index == 0) {
+            return null;
+        } else if (index <= functions.size()) {
+            return functions.get(index - 1);
+        }
+        String name = string();
+        String jvmName = string();
+        int arity = (int) unsigned();
+        List<Environment.Type> parameterTypes = new ArrayList<>(arity);
+        for (int i = 0; i < arity; i++) {
+            parameterTypes.add(Environment.getType(string()));
+        }
+        Environment.Function function = new Environment.Function(name, jvmName, parameterTypes, Environment.getType(string()), args -> Environment.NIL);
+        functions.add(function);
+        return function;
+    }
+
+    private Optional<String> optionalString() throws IOException {
+        return in.readBoolean() ? Optional.of(string()) : Optional.empty();
+    }
+
+    private List<String> strings() throws IOException {
+        int size = (int) unsigned();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(string());
+        }
+        return strings;
+    }
+
+    private String string() throws IOException {
+        int index = (int) unsigned();
+        if (index <= strings.size()) {
+            return strings.get(index - 1);
+        }
+        String string = new String(bytes(), StandardCharsets.UTF_8);
+        strings.add(string);
+        return string;
+    }
+
+    private byte[] bytes() throws IOException {
+        byte[] bytes = new byte[(int) unsigned()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private long signed() throws IOException {
+        long value = unsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long unsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+}
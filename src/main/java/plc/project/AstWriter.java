@@ -0,0 +1,441 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes an AST in a compact binary format which is read back by
+ * {@link AstReader}, so tools can reload a source without lexing and parsing
+ * it again.
+ *
+ * Each node is a tag byte followed by its fields in constructor order, and
+ * counts and integers are variable length. Strings, variables and functions
+ * are written in full the first time they appear and as a reference to that
+ * first occurrence afterwards, which keeps variables shared by a declaration
+ * and its accesses shared when read back. Types are written by name and read
+ * back with {@link Environment#getType(String)}.
+ *
+ * The types, variables and functions attached by the {@link Analyzer} are
+ * written when present, but not the values of variables or the bodies of
+ * functions in the environment, and not the slots or function handles cached
+ * by the {@link Resolver} and interpreter, which are computed again.
+ */
+public final class AstWriter implements Ast.Visitor<Void> {
+
+    static final int MAGIC = 0x504C4341;
+    static final int VERSION = 1;
+
+    static final int SOURCE = 0, GLOBAL = 1, FUNCTION = 2;
+    static final int EXPRESSION_STATEMENT = 3, DECLARATION = 4, ASSIGNMENT = 5, IF = 6, SWITCH = 7, CASE = 8,
+            WHILE = 9, RETURN = 10;
+    static final int LITERAL = 11, GROUP = 12, BINARY = 13, ACCESS = 14, FUNCTION_EXPRESSION = 15, LIST = 16;
+
+    static final int NIL = 0, TRUE = 1, FALSE = 2, INTEGER = 3, BIG_INTEGER = 4, DECIMAL = 5, CHARACTER = 6,
+            STRING = 7;
+
+    private final DataOutput out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Environment.Variable, Integer> variables = new IdentityHashMap<>();
+    private final Map<Environment.Function, Integer> functions = new IdentityHashMap<>();
+
+    public AstWriter(DataOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns the encoding of the source as a byte array. As in {@link
+     * AstReader#deserialize(byte[])}, single bytes are written without
+     * locking.
+     */
+    public static byte[] serialize(Ast.Source ast) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+
+            @Override
+            public void write(int b) {
+                if (count == buf.length) {
+                    buf = Arrays.copyOf(buf, 2 * count);
+                }
+                buf[count++] = (byte) b;
+            }
+
+        };
+        try {
+            new AstWriter(new DataOutputStream(bytes)).write(ast);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the source preceded by a header identifying the format, which
+     * {@link AstReader#readSource()} checks.
+     */
+    public void write(Ast.Source ast) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        try {
+            visit(ast);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        tag(SOURCE);
+        nodes(ast.getGlobals());
+        nodes(ast.getFunctions());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        tag(GLOBAL);
+        string(ast.getName());
+        string(ast.getTypeName());
+        bool(ast.getMutable());
+        node(ast.getValue());
+        Environment.Variable variable;
+        try {
+            variable = ast.getVariable();
+        } catch (IllegalStateException e) {
+            variable = null;
+        }
+        variable(variable);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        tag(FUNCTION);
+        string(ast.getName());
+        strings(ast.getParameters());
+        strings(ast.getParameterTypeNames());
+        string(ast.getReturnTypeName());
+        nodes(ast.getStatements());
+        Environment.Function function;
+        try {
+            function = ast.getFunction();
+        } catch (IllegalStateException e) {
+            function = null;
+        }
+        function(function);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        tag(EXPRESSION_STATEMENT);
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        tag(DECLARATION);
+        string(ast.getName());
+        string(ast.getTypeName());
+        node(ast.getValue());
+        Environment.Variable variable;
+        try {
+            variable = ast.getVariable();
+        } catch (IllegalStateException e) {
+            variable = null;
+        }
+        variable(variable);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        tag(ASSIGNMENT);
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        tag(IF);
+        visit(ast.getCondition());
+        nodes(ast.getThenStatements());
+        nodes(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        tag(SWITCH);
+        visit(ast.getCondition());
+        nodes(ast.getCases());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        tag(CASE);
+        node(ast.getValue());
+        nodes(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        tag(WHILE);
+        visit(ast.getCondition());
+        nodes(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        tag(RETURN);
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        tag(LITERAL);
+        Object literal = ast.getLiteral();
+        if (literal == null) {
+            tag(NIL);
+        } else if (literal instanceof Boolean) {
+            tag((Boolean) literal ? TRUE : FALSE);
+        } else if (literal instanceof BigInteger && ((BigInteger) literal).bitLength() < 64) {
+            tag(INTEGER);
+            signed(((BigInteger) literal).longValue());
+        } else if (literal instanceof BigInteger) {
+            tag(BIG_INTEGER);
+            bytes(((BigInteger) literal).toByteArray());
+        } else if (literal instanceof BigDecimal) {
+            tag(DECIMAL);
+            bytes(((BigDecimal) literal).unscaledValue().toByteArray());
+            signed(((BigDecimal) literal).scale());
+        } else if (literal instanceof Character) {
+            tag(CHARACTER);
+            unsigned((Character) literal);
+        } else if (literal instanceof String) {
+            tag(STRING);
+            bytes(((String) literal).getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("Unsupported literal " + literal.getClass().getName() + ".");
+        }
+        type(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        tag(GROUP);
+        visit(ast.getExpression());
+        type(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        tag(BINARY);
+        string(ast.getOperator());
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        type(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        tag(ACCESS);
+        node(ast.getOffset());
+        string(ast.getName());
+        Environment.Variable variable;
+        try {
+            variable = ast.getVariable();
+        } catch (IllegalStateException e) {
+            variable = null;
+        }
+        variable(variable);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        tag(FUNCTION_EXPRESSION);
+        string(ast.getName());
+        nodes(ast.getArguments());
+        Environment.Function function;
+        try {
+            function = ast.getFunction();
+        } catch (IllegalStateException e) {
+            function = null;
+        }
+        function(function);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        tag(LIST);
+        nodes(ast.getValues());
+        type(ast);
+        return null;
+    }
+
+    private void node(Optional<? extends Ast> ast) {
+        bool(ast.isPresent());
+        ast.ifPresent(this::visit);
+    }
+
+    private void nodes(List<? extends Ast> asts) {
+        unsigned(asts.size());
+        for (Ast ast : asts) {
+            visit(ast);
+        }
+    }
+
+    /**
+     * Writes the type of an expression which stores its own type, or nothing
+     * if it has not been analyzed.
+     */
+    private void type(Ast.Expression ast) {
+        Environment.Type type;
+        try {
+            type = ast.getType();
+        } catch (IllegalStateException e) {
+            type = null;
+        }
+        bool(type != null);
+        if (type != null) {
+            string(type.getName());
+        }
+    }
+
+    /**
+     * Writes 0 for no variable, the index of a variable plus one if it has
+     * been written before, and otherwise the count of variables plus one
+     * followed by the variable.
+     */
+    private void variable(Environment.Variable variable) {
+        if (variable == null) {
+            unsigned(0);
+            return;
+        }
+        Integer index = variables.get(variable);
+        if (index != null) {
+            unsigned(index + 1);
+            return;
+        }
+        variables.put(variable, variables.size());
+        unsigned(variables.size());
+        string(variable.getName());
+        string(variable.getJvmName());
+        string(variable.getType().getName());
+        bool(variable.getMutable());
+    }
+
+    /**
+     * Writes a function in the same way as {@link #variable}.
+     */
+    private void function(Environment.Function function) {
+        if (function == null) {
+            unsigned(0);
+            return;
+        }
+        Integer index = functions.get(function);
+        if (index != null) {
+            unsigned(index + 1);
+            return;
+        }
+        functions.put(function, functions.size());
+        unsigned(functions.size());
+        string(function.getName());
+        string(function.getJvmName());
+        unsigned(function.getParameterTypes().size());
+        for (Environment.Type type : function.getParameterTypes()) {
+            string(type.getName());
+        }
+        string(function.getReturnType().getName());
+    }
+
+    private void string(Optional<String> string) {
+        bool(string.isPresent());
+        string.ifPresent(this::string);
+    }
+
+    private void strings(List<String> strings) {
+        unsigned(strings.size());
+        for (String string : strings) {
+            string(string);
+        }
+    }
+
+    /**
+     * Writes a string in the same way as {@link #variable}, so repeated names
+     * are only written once.
+     */
+    private void string(String string) {
+        Integer index = strings.get(string);
+        if (index != null) {
+            unsigned(index + 1);
+            return;
+        }
+        strings.put(string, strings.size());
+        unsigned(strings.size());
+        bytes(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void bytes(byte[] bytes) {
+        unsigned(bytes.length);
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void bool(boolean value) {
+        tag(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a signed integer zigzag encoded, so small negative values are
+     * short too.
+     */
+    private void signed(long value) {
+        unsigned((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes an integer seven bits at a time, with the high bit of each byte
+     * set when more bytes follow.
+     */
+    private void unsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            tag((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        tag((int) value);
+    }
+
+    private void tag(int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,734 @@
+package plc.project;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles an analyzed source directly into the bytecode of a class named
+ * {@code Main}, which behaves like the Java source printed by {@link
+ * Generator}: globals are fields initialized by the constructor, functions
+ * are methods named by their {@code jvmName}, and values have the types named
+ * by {@link Environment.Type#getJvmName()}. The class can be loaded and run
+ * with {@link #run(Ast.Source)} without compiling any Java source.
+ *
+ * Every expression leaves exactly one value on the operand stack, so calling
+ * a function which returns {@code Nil} pushes {@code null} in place of its
+ * result. Accessing list elements is not supported, as it is not by the
+ * {@link Generator} either.
+ */
+public final class BytecodeGenerator implements Ast.Visitor<Void> {
+
+    /**
+     * The version of the generated code, which is part of the key of cached
+     * class files, so it must change whenever the generated code does.
+     */
+    public static final int VERSION = 3;
+
+    private static final String CLASS = "Main";
+
+    private final ClassWriter writer = new ClassWriter(CLASS, "java/lang/Object");
+    private ClassWriter.Code code;
+    private Ast.Function function;
+
+    /**
+     * The local variables of the current method in each block, innermost
+     * last, mapping their jvmName to their index.
+     */
+    private final List<Map<String, Integer>> locals = new ArrayList<>();
+    private final Map<String, String> fields = new HashMap<>();
+
+    /**
+     * Compiles the source, returning the bytes of the class file.
+     */
+    public static byte[] generate(Ast.Source ast) {
+        BytecodeGenerator generator = new BytecodeGenerator();
+        generator.visit(ast);
+        return generator.writer.toByteArray();
+    }
+
+    /**
+     * Compiles the source, loads the class and invokes its main function,
+     * returning its result.
+     */
+    public static int run(Ast.Source ast) {
+        return run(generate(ast));
+    }
+
+    /**
+     * Loads the class file generated for a source and invokes its main
+     * function, returning its result.
+     */
+    public static int run(byte[] bytes) {
+        ProgramClassLoader loader = new ProgramClassLoader(Collections.singletonMap(CLASS, bytes));
+        try {
+            Class<?> main = loader.loadClass(CLASS);
+            return (Integer) main.getMethod("main").invoke(main.getConstructor().newInstance());
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        code = writer.method(ClassWriter.ACC_PUBLIC, "<init>", "()V");
+        code.varInsn(true, "L" + CLASS + ";", 0);
+        code.methodInsn(ClassWriter.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        for (Ast.Global global : ast.getGlobals()) {
+            visit(global);
+        }
+        code.insn(ClassWriter.RETURN, 0);
+        code.end();
+
+        code = writer.method(ClassWriter.ACC_PUBLIC | ClassWriter.ACC_STATIC, "main", "([Ljava/lang/String;)V");
+        code.typeInsn(ClassWriter.NEW, CLASS);
+        code.insn(ClassWriter.DUP, 1);
+        code.methodInsn(ClassWriter.INVOKESPECIAL, CLASS, "<init>", "()V");
+        code.methodInsn(ClassWriter.INVOKEVIRTUAL, CLASS, "main", "()I");
+        code.methodInsn(ClassWriter.INVOKESTATIC, "java/lang/System", "exit", "(I)V");
+        code.insn(ClassWriter.RETURN, 0);
+        code.end();
+
+        for (Ast.Function function : ast.getFunctions()) {
+            visit(function);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        Environment.Variable variable = ast.getVariable();
+        String descriptor = descriptor(variable.getType());
+        boolean list = ast.getValue().isPresent() && ast.getValue().get() instanceof Ast.Expression.PlcList;
+        if (list) {
+            descriptor = "[" + descriptor;
+        }
+        int access = ClassWriter.ACC_PUBLIC;
+        if (!ast.getMutable() && ast.getValue().isPresent()) {
+            access |= ClassWriter.ACC_FINAL;
+        }
+        writer.field(access, variable.getJvmName(), descriptor);
+        fields.put(variable.getJvmName(), descriptor);
+        if (ast.getValue().isPresent()) {
+            code.varInsn(true, "L" + CLASS + ";", 0);
+            if (list) {
+                visitArray((Ast.Expression.PlcList) ast.getValue().get(), variable.getType());
+            } else {
+                visit(ast.getValue().get());
+                coerce(ast.getValue().get().getType(), variable.getType());
+            }
+            code.fieldInsn(ClassWriter.PUTFIELD, CLASS, variable.getJvmName(), descriptor);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        Environment.Function function = ast.getFunction();
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Environment.Type type : function.getParameterTypes()) {
+            descriptor.append(descriptor(type));
+        }
+        descriptor.append(')').append(returnDescriptor(function.getReturnType()));
+        code = writer.method(ClassWriter.ACC_PUBLIC, function.getJvmName(), descriptor.toString());
+        this.function = ast;
+        locals.add(new HashMap<>());
+        int index = 1;
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            locals.get(0).put(ast.getParameters().get(i), index);
+            index += ClassWriter.size(descriptor(function.getParameterTypes().get(i)));
+        }
+        try {
+            visitBlock(ast.getStatements());
+        } finally {
+            locals.clear();
+            this.function = null;
+        }
+        // the JVM rejects code which can run past the end of the method
+        String returnType = returnDescriptor(function.getReturnType());
+        if (!returnType.equals("V")) {
+            pushDefault(returnType);
+        }
+        code.insn(returnInsn(returnType), -ClassWriter.size(returnType));
+        code.end();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        pop(descriptor(ast.getExpression().getType()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        Environment.Variable variable = ast.getVariable();
+        String descriptor = descriptor(variable.getType());
+        int index = code.newLocal(descriptor);
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            coerce(ast.getValue().get().getType(), variable.getType());
+        } else {
+            pushDefault(descriptor);
+        }
+        code.varInsn(false, descriptor, index);
+        locals.get(locals.size() - 1).put(variable.getJvmName(), index);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            throw new RuntimeException("Assigning to list elements is not supported.");
+        }
+        Environment.Variable variable = receiver.getVariable();
+        Integer index = lookupLocal(variable.getJvmName());
+        if (index != null) {
+            visit(ast.getValue());
+            coerce(ast.getValue().getType(), variable.getType());
+            code.varInsn(false, descriptor(variable.getType()), index);
+        } else {
+            code.varInsn(true, "L" + CLASS + ";", 0);
+            visit(ast.getValue());
+            coerce(ast.getValue().getType(), variable.getType());
+            code.fieldInsn(ClassWriter.PUTFIELD, CLASS, variable.getJvmName(), field(variable.getJvmName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        ClassWriter.Label otherwise = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        visit(ast.getCondition());
+        code.jump(ClassWriter.IFEQ, otherwise);
+        visitBlock(ast.getThenStatements());
+        code.jump(ClassWriter.GOTO, end);
+        code.mark(otherwise);
+        visitBlock(ast.getElseStatements());
+        code.mark(end);
+        return null;
+    }
+
+    /**
+     * Stores the condition in a local variable and compares it to the value
+     * of each case in order, running the statements of the first one which
+     * matches and then leaving the switch, or the default case otherwise.
+     * Switches on ints whose case values are all literals are instead written
+     * as a single {@code tableswitch} or {@code lookupswitch}.
+     */
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        Environment.Type type = ast.getCondition().getType();
+        String descriptor = descriptor(type);
+        if (isInt(descriptor) && visitSwitchTable(ast)) {
+            return null;
+        }
+        visit(ast.getCondition());
+        int condition = code.newLocal(descriptor);
+        code.varInsn(false, descriptor, condition);
+        ClassWriter.Label end = new ClassWriter.Label();
+        for (Ast.Statement.Case caseStmt : ast.getCases()) {
+            ClassWriter.Label next = new ClassWriter.Label();
+            if (caseStmt.getValue().isPresent()) {
+                code.varInsn(true, descriptor, condition);
+                visit(caseStmt.getValue().get());
+                coerce(caseStmt.getValue().get().getType(), type);
+                if (descriptor.equals("D")) {
+                    code.insn(ClassWriter.DCMPL, -3);
+                    code.jump(ClassWriter.IFNE, next);
+                } else if (isInt(descriptor)) {
+                    code.jump(ClassWriter.IF_ICMPNE, next);
+                } else {
+                    code.methodInsn(ClassWriter.INVOKEVIRTUAL, "java/lang/Object", "equals", "(Ljava/lang/Object;)Z");
+                    code.jump(ClassWriter.IFEQ, next);
+                }
+            }
+            visit(caseStmt);
+            code.jump(ClassWriter.GOTO, end);
+            code.mark(next);
+        }
+        code.mark(end);
+        return null;
+    }
+
+    /**
+     * Writes the switch as a switch instruction if every case value before
+     * the default case is an int literal, skipping cases whose value repeats
+     * an earlier one, and otherwise writes nothing and returns false.
+     */
+    private boolean visitSwitchTable(Ast.Statement.Switch ast) {
+        TreeMap<Integer, Ast.Statement.Case> cases = new TreeMap<>();
+        Ast.Statement.Case otherwise = null;
+        for (Ast.Statement.Case caseStmt : ast.getCases()) {
+            if (!caseStmt.getValue().isPresent()) {
+                otherwise = caseStmt;
+                break;
+            } else if (!(caseStmt.getValue().get() instanceof Ast.Expression.Literal)) {
+                return false;
+            }
+            Object literal = ((Ast.Expression.Literal) caseStmt.getValue().get()).getLiteral();
+            int key;
+            if (literal instanceof BigInteger && ((BigInteger) literal).bitLength() < Integer.SIZE) {
+                key = ((BigInteger) literal).intValue();
+            } else if (literal instanceof Character) {
+                key = (Character) literal;
+            } else if (literal instanceof Boolean) {
+                key = (Boolean) literal ? 1 : 0;
+            } else {
+                return false;
+            }
+            cases.putIfAbsent(key, caseStmt);
+        }
+        int[] keys = new int[cases.size()];
+        ClassWriter.Label[] labels = new ClassWriter.Label[cases.size()];
+        int i = 0;
+        for (int key : cases.keySet()) {
+            keys[i] = key;
+            labels[i++] = new ClassWriter.Label();
+        }
+        ClassWriter.Label defaultLabel = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        visit(ast.getCondition());
+        code.switchInsn(defaultLabel, keys, labels);
+        i = 0;
+        for (Ast.Statement.Case caseStmt : cases.values()) {
+            code.mark(labels[i++]);
+            visit(caseStmt);
+            code.jump(ClassWriter.GOTO, end);
+        }
+        code.mark(defaultLabel);
+        if (otherwise != null) {
+            visit(otherwise);
+        }
+        code.mark(end);
+        return true;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        ClassWriter.Label start = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        code.mark(start);
+        visit(ast.getCondition());
+        code.jump(ClassWriter.IFEQ, end);
+        visitBlock(ast.getStatements());
+        code.jump(ClassWriter.GOTO, start);
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        Environment.Type type = function.getFunction().getReturnType();
+        String descriptor = returnDescriptor(type);
+        visit(ast.getValue());
+        if (descriptor.equals("V")) {
+            pop(descriptor(ast.getValue().getType()));
+        } else {
+            coerce(ast.getValue().getType(), type);
+        }
+        code.insn(returnInsn(descriptor), -ClassWriter.size(descriptor));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object literal = ast.getLiteral();
+        if (literal == null) {
+            code.insn(ClassWriter.ACONST_NULL, 1);
+        } else if (literal instanceof Boolean) {
+            code.pushInt((Boolean) literal ? 1 : 0);
+        } else if (literal instanceof Character) {
+            code.pushInt((Character) literal);
+        } else if (literal instanceof BigInteger) {
+            code.pushInt(((BigInteger) literal).intValueExact());
+        } else if (literal instanceof BigDecimal) {
+            code.pushDouble(((BigDecimal) literal).doubleValue());
+        } else {
+            code.pushString((String) literal);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = ast.getLeft();
+        Ast.Expression right = ast.getRight();
+        switch (ast.getOperator()) {
+            case "&&":
+            case "||": {
+                boolean and = ast.getOperator().equals("&&");
+                ClassWriter.Label shortCircuit = new ClassWriter.Label();
+                ClassWriter.Label end = new ClassWriter.Label();
+                visit(left);
+                code.jump(and ? ClassWriter.IFEQ : ClassWriter.IFNE, shortCircuit);
+                visit(right);
+                code.jump(and ? ClassWriter.IFEQ : ClassWriter.IFNE, shortCircuit);
+                code.pushInt(and ? 1 : 0);
+                code.jump(ClassWriter.GOTO, end);
+                code.mark(shortCircuit);
+                code.pushInt(and ? 0 : 1);
+                code.mark(end);
+                return null;
+            }
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+            case "==":
+            case "!=":
+                visitComparison(ast.getOperator(), left, right);
+                return null;
+            case "+":
+                if (descriptor(ast.getType()).equals("Ljava/lang/String;")) {
+                    code.typeInsn(ClassWriter.NEW, "java/lang/StringBuilder");
+                    code.insn(ClassWriter.DUP, 1);
+                    code.methodInsn(ClassWriter.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V");
+                    append(left);
+                    append(right);
+                    code.methodInsn(ClassWriter.INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;");
+                    return null;
+                }
+                visitArithmetic(ast, ClassWriter.IADD, ClassWriter.DADD);
+                return null;
+            case "-":
+                visitArithmetic(ast, ClassWriter.ISUB, ClassWriter.DSUB);
+                return null;
+            case "*":
+                visitArithmetic(ast, ClassWriter.IMUL, ClassWriter.DMUL);
+                return null;
+            case "/":
+                visitArithmetic(ast, ClassWriter.IDIV, ClassWriter.DDIV);
+                return null;
+            default:
+                throw new RuntimeException("Unknown operator " + ast.getOperator() + ".");
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            throw new RuntimeException("Accessing list elements is not supported.");
+        }
+        Environment.Variable variable = ast.getVariable();
+        Integer index = lookupLocal(variable.getJvmName());
+        if (index != null) {
+            code.varInsn(true, descriptor(variable.getType()), index);
+        } else {
+            code.varInsn(true, "L" + CLASS + ";", 0);
+            code.fieldInsn(ClassWriter.GETFIELD, CLASS, variable.getJvmName(), field(variable.getJvmName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        Environment.Function function = ast.getFunction();
+        String name = function.getJvmName();
+        String owner = CLASS;
+        int opcode = ClassWriter.INVOKEVIRTUAL;
+        if (name.equals("System.out.println")) {
+            code.fieldInsn(ClassWriter.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+            owner = "java/io/PrintStream";
+            name = "println";
+        } else if (name.contains(".")) {
+            throw new RuntimeException("Unsupported function " + name + ".");
+        } else {
+            code.varInsn(true, "L" + CLASS + ";", 0);
+        }
+        StringBuilder descriptor = new StringBuilder("(");
+        for (int i = 0; i < ast.getArguments().size(); i++) {
+            Environment.Type type = function.getParameterTypes().get(i);
+            visit(ast.getArguments().get(i));
+            coerce(ast.getArguments().get(i).getType(), type);
+            descriptor.append(descriptor(type));
+        }
+        String returnType = returnDescriptor(function.getReturnType());
+        code.methodInsn(opcode, owner, name, descriptor.append(')').append(returnType).toString());
+        if (returnType.equals("V")) {
+            code.insn(ClassWriter.ACONST_NULL, 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        throw new RuntimeException("Lists are only supported as the value of a global.");
+    }
+
+    private void visitBlock(List<Ast.Statement> statements) {
+        locals.add(new HashMap<>());
+        try {
+            for (Ast.Statement statement : statements) {
+                visit(statement);
+            }
+        } finally {
+            locals.remove(locals.size() - 1);
+        }
+    }
+
+    /**
+     * Creates an array of the element type holding the values of the list.
+     */
+    private void visitArray(Ast.Expression.PlcList ast, Environment.Type type) {
+        String descriptor = descriptor(type);
+        code.pushInt(ast.getValues().size());
+        int store;
+        switch (descriptor) {
+            case "Z":
+                code.intInsn(ClassWriter.NEWARRAY, ClassWriter.T_BOOLEAN);
+                store = ClassWriter.BASTORE;
+                break;
+            case "C":
+                code.intInsn(ClassWriter.NEWARRAY, ClassWriter.T_CHAR);
+                store = ClassWriter.CASTORE;
+                break;
+            case "I":
+                code.intInsn(ClassWriter.NEWARRAY, ClassWriter.T_INT);
+                store = ClassWriter.IASTORE;
+                break;
+            case "D":
+                code.intInsn(ClassWriter.NEWARRAY, ClassWriter.T_DOUBLE);
+                store = ClassWriter.DASTORE;
+                break;
+            default:
+                code.typeInsn(ClassWriter.ANEWARRAY, descriptor.substring(1, descriptor.length() - 1));
+                store = ClassWriter.AASTORE;
+        }
+        for (int i = 0; i < ast.getValues().size(); i++) {
+            code.insn(ClassWriter.DUP, 1);
+            code.pushInt(i);
+            visit(ast.getValues().get(i));
+            coerce(ast.getValues().get(i).getType(), type);
+            code.insn(store, -2 - ClassWriter.size(descriptor));
+        }
+    }
+
+    /**
+     * Compares the operands as Java would, promoting an int operand to a
+     * double if the other one is a double, and comparing references with
+     * {@code compareTo}, except for equality which compares references.
+     */
+    private void visitComparison(String operator, Ast.Expression left, Ast.Expression right) {
+        String leftType = descriptor(left.getType());
+        String rightType = descriptor(right.getType());
+        ClassWriter.Label success = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        boolean numeric = (isInt(leftType) || leftType.equals("D")) && (isInt(rightType) || rightType.equals("D"));
+        if (numeric && (leftType.equals("D") || rightType.equals("D"))) {
+            visit(left);
+            if (isInt(leftType)) {
+                code.insn(ClassWriter.I2D, 1);
+            }
+            visit(right);
+            if (isInt(rightType)) {
+                code.insn(ClassWriter.I2D, 1);
+            }
+            boolean less = operator.equals("<") || operator.equals("<=");
+            code.insn(less ? ClassWriter.DCMPG : ClassWriter.DCMPL, -3);
+            code.jump(compareToZero(operator), success);
+        } else if (numeric) {
+            visit(left);
+            visit(right);
+            code.jump(compareToZero(operator) - ClassWriter.IFEQ + ClassWriter.IF_ICMPEQ, success);
+        } else if (!isInt(leftType) && !isInt(rightType) && !leftType.equals("D") && !rightType.equals("D")) {
+            visit(left);
+            visit(right);
+            if (operator.equals("==") || operator.equals("!=")) {
+                code.jump(operator.equals("==") ? ClassWriter.IF_ACMPEQ : ClassWriter.IF_ACMPNE, success);
+            } else {
+                code.methodInsn(ClassWriter.INVOKEINTERFACE, "java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I");
+                code.jump(compareToZero(operator), success);
+            }
+        } else {
+            throw new RuntimeException("Cannot compare " + left.getType().getName() + " and " + right.getType().getName() + ".");
+        }
+        code.pushInt(0);
+        code.jump(ClassWriter.GOTO, end);
+        code.mark(success);
+        code.pushInt(1);
+        code.mark(end);
+    }
+
+    private void visitArithmetic(Ast.Expression.Binary ast, int intOpcode, int doubleOpcode) {
+        String descriptor = descriptor(ast.getType());
+        visit(ast.getLeft());
+        coerce(ast.getLeft().getType(), ast.getType());
+        visit(ast.getRight());
+        coerce(ast.getRight().getType(), ast.getType());
+        if (descriptor.equals("D")) {
+            code.insn(doubleOpcode, -2);
+        } else if (descriptor.equals("I")) {
+            code.insn(intOpcode, -1);
+        } else {
+            throw new RuntimeException("Cannot apply " + ast.getOperator() + " to " + ast.getType().getName() + ".");
+        }
+    }
+
+    /**
+     * Appends the value of the expression to the StringBuilder on the stack.
+     */
+    private void append(Ast.Expression ast) {
+        visit(ast);
+        String descriptor = descriptor(ast.getType());
+        if (descriptor.startsWith("L") && !descriptor.equals("Ljava/lang/String;")) {
+            descriptor = "Ljava/lang/Object;";
+        }
+        code.methodInsn(ClassWriter.INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(" + descriptor + ")Ljava/lang/StringBuilder;");
+    }
+
+    /**
+     * Converts the value on the stack to the target type, which only requires
+     * boxing a primitive value assigned to a reference type such as Any.
+     */
+    private void coerce(Environment.Type from, Environment.Type to) {
+        String source = descriptor(from);
+        String target = descriptor(to);
+        if (source.equals(target) || !target.startsWith("L")) {
+            if (source.equals("I") && target.equals("D")) {
+                code.insn(ClassWriter.I2D, 1);
+            }
+            return;
+        }
+        switch (source) {
+            case "Z":
+                code.methodInsn(ClassWriter.INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+                break;
+            case "C":
+                code.methodInsn(ClassWriter.INVOKESTATIC, "java/lang/Character", "valueOf", "(C)Ljava/lang/Character;");
+                break;
+            case "I":
+                code.methodInsn(ClassWriter.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+                break;
+            case "D":
+                code.methodInsn(ClassWriter.INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+                break;
+        }
+    }
+
+    private void pushDefault(String descriptor) {
+        if (descriptor.equals("D")) {
+            code.pushDouble(0);
+        } else if (isInt(descriptor)) {
+            code.pushInt(0);
+        } else {
+            code.insn(ClassWriter.ACONST_NULL, 1);
+        }
+    }
+
+    private void pop(String descriptor) {
+        code.insn(ClassWriter.size(descriptor) == 2 ? ClassWriter.POP2 : ClassWriter.POP, -ClassWriter.size(descriptor));
+    }
+
+    private Integer lookupLocal(String name) {
+        for (int i = locals.size() - 1; i >= 0; i--) {
+            Integer index = locals.get(i).get(name);
+            if (index != null) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private String field(String name) {
+        String descriptor = fields.get(name);
+        if (descriptor == null) {
+            throw new RuntimeException("The variable " + name + " is not defined.");
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the conditional jump which compares an int to zero for the
+     * operator, such as {@code IFLT} for {@code <}.
+     */
+    private static int compareToZero(String operator) {
+        switch (operator) {
+            case "<":
+                return ClassWriter.IFLT;
+            case "<=":
+                return ClassWriter.IFLE;
+            case ">":
+                return ClassWriter.IFGT;
+            case ">=":
+                return ClassWriter.IFGE;
+            case "==":
+                return ClassWriter.IFEQ;
+            default:
+                return ClassWriter.IFNE;
+        }
+    }
+
+    private static int returnInsn(String descriptor) {
+        switch (descriptor) {
+            case "V":
+                return ClassWriter.RETURN;
+            case "D":
+                return ClassWriter.DRETURN;
+            default:
+                return isInt(descriptor) ? ClassWriter.IRETURN : ClassWriter.ARETURN;
+        }
+    }
+
+    private static boolean isInt(String descriptor) {
+        return descriptor.equals("I") || descriptor.equals("C") || descriptor.equals("Z");
+    }
+
+    /**
+     * Returns the descriptor of a method returning the type, where functions
+     * returning {@code Nil} are void.
+     */
+    private static String returnDescriptor(Environment.Type type) {
+        return type.equals(Environment.Type.NIL) ? "V" : descriptor(type);
+    }
+
+    /**
+     * Returns the descriptor of the type from its jvmName.
+     */
+    private static String descriptor(Environment.Type type) {
+        switch (type.getJvmName()) {
+            case "boolean":
+                return "Z";
+            case "char":
+                return "C";
+            case "int":
+                return "I";
+            case "double":
+                return "D";
+            case "Object":
+            case "Void":
+            case "String":
+            case "Comparable":
+                return "Ljava/lang/" + type.getJvmName() + ";";
+            default:
+                return "L" + type.getJvmName().replace('.', '/') + ";";
+        }
+    }
+
+}
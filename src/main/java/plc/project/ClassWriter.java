@@ -0,0 +1,551 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a class file with a constant pool, fields and methods, which is all
+ * the {@link BytecodeGenerator} needs. Classes are written in version 49
+ * (Java 5), which the JVM still verifies by type inference, so no stack map
+ * frames have to be computed for the branches in the code.
+ *
+ * Names are internal names such as {@code java/lang/String}, and types are
+ * descriptors such as {@code I} or {@code Ljava/lang/String;}.
+ */
+public final class ClassWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    public static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, ICONST_1 = 0x04, DCONST_0 = 0x0E;
+    public static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13, LDC2_W = 0x14;
+    public static final int ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, ISTORE = 0x36, DSTORE = 0x39, ASTORE = 0x3A;
+    public static final int IASTORE = 0x4F, DASTORE = 0x52, AASTORE = 0x53, BASTORE = 0x54, CASTORE = 0x55;
+    public static final int POP = 0x57, POP2 = 0x58, DUP = 0x59;
+    public static final int IADD = 0x60, DADD = 0x63, ISUB = 0x64, DSUB = 0x67, IMUL = 0x68, DMUL = 0x6B, IDIV = 0x6C, DDIV = 0x6F;
+    public static final int I2D = 0x87, DCMPL = 0x97, DCMPG = 0x98;
+    public static final int IFEQ = 0x99, IFNE = 0x9A, IFLT = 0x9B, IFGE = 0x9C, IFGT = 0x9D, IFLE = 0x9E;
+    public static final int IF_ICMPEQ = 0x9F, IF_ICMPNE = 0xA0, IF_ICMPLT = 0xA1, IF_ICMPGE = 0xA2, IF_ICMPGT = 0xA3, IF_ICMPLE = 0xA4;
+    public static final int IF_ACMPEQ = 0xA5, IF_ACMPNE = 0xA6, GOTO = 0xA7, TABLESWITCH = 0xAA, LOOKUPSWITCH = 0xAB;
+    public static final int IRETURN = 0xAC, DRETURN = 0xAF, ARETURN = 0xB0, RETURN = 0xB1;
+    public static final int GETSTATIC = 0xB2, GETFIELD = 0xB4, PUTFIELD = 0xB5;
+    public static final int INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8, INVOKEINTERFACE = 0xB9;
+    public static final int NEW = 0xBB, NEWARRAY = 0xBC, ANEWARRAY = 0xBD;
+
+    public static final int T_BOOLEAN = 4, T_CHAR = 5, T_DOUBLE = 7, T_INT = 10;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    public ClassWriter(String name, String superName) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+    }
+
+    public void field(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Starts a method, whose code is added to the class by {@link Code#end()}.
+     */
+    public Code method(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public int utf8(String value) {
+        return constant("Utf8:" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    public int classRef(String name) {
+        int index = utf8(name);
+        return constant("Class:" + name, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(index);
+        });
+    }
+
+    public int string(String value) {
+        int index = utf8(value);
+        return constant("String:" + value, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(index);
+        });
+    }
+
+    public int integer(int value) {
+        return constant("Integer:" + value, 1, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    /**
+     * Adds a double, which takes up two entries of the constant pool.
+     */
+    public int doubleConstant(double value) {
+        return constant("Double:" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+        return memberRef(isInterface ? 11 : 10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int classIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("NameAndType:" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant(tag + ":" + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(classIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, int size, Entry entry) {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            entry.write(new DataOutputStream(pool));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, poolCount);
+        poolCount += size;
+        return poolCount - size;
+    }
+
+    @FunctionalInterface
+    private interface Entry {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * Returns the number of local variable or operand stack slots taken up
+     * by a value of the type, which is zero for void.
+     */
+    public static int size(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'V':
+                return 0;
+            case 'J':
+            case 'D':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * A position in the code which branches can jump to before it is marked.
+     */
+    public static final class Label {
+
+        private int position = -1;
+        private int stack = -1;
+        private final List<Integer> branches = new ArrayList<>();
+
+        /**
+         * The positions of switch instructions jumping to this label and of
+         * their four byte offsets to it.
+         */
+        private final List<int[]> switches = new ArrayList<>();
+
+    }
+
+    /**
+     * The code of a method. Each instruction updates the depth of the operand
+     * stack, from which the maximum is computed. Code after an unconditional
+     * jump continues with the depth recorded for the next label marked.
+     */
+    public final class Code {
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private byte[] code = new byte[64];
+        private int length = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = (access & ACC_STATIC) != 0 ? 0 : 1;
+            for (String parameter : parameters(descriptor)) {
+                maxLocals += size(parameter);
+            }
+        }
+
+        public int getMaxLocals() {
+            return maxLocals;
+        }
+
+        /**
+         * Reserves a local variable for a value of the type, returning its
+         * index.
+         */
+        public int newLocal(String descriptor) {
+            int index = maxLocals;
+            maxLocals += size(descriptor);
+            return index;
+        }
+
+        public void insn(int opcode, int delta) {
+            write(opcode);
+            adjust(delta);
+        }
+
+        public void intInsn(int opcode, int operand) {
+            write(opcode);
+            if (opcode == SIPUSH) {
+                writeShort(operand);
+            } else {
+                write(operand);
+            }
+            adjust(opcode == NEWARRAY ? 0 : 1);
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                insn(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                intInsn(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                intInsn(SIPUSH, value);
+            } else {
+                ldc(integer(value));
+            }
+        }
+
+        public void pushDouble(double value) {
+            if (Double.doubleToRawLongBits(value) == 0) {
+                insn(DCONST_0, 2);
+            } else {
+                write(LDC2_W);
+                writeShort(doubleConstant(value));
+                adjust(2);
+            }
+        }
+
+        public void pushString(String value) {
+            ldc(string(value));
+        }
+
+        private void ldc(int index) {
+            if (index <= 0xFF) {
+                write(LDC);
+                write(index);
+            } else {
+                write(LDC_W);
+                writeShort(index);
+            }
+            adjust(1);
+        }
+
+        /**
+         * Loads or stores a local variable, with the opcode for an int, double
+         * or reference chosen by the type.
+         */
+        public void varInsn(boolean load, String descriptor, int index) {
+            int opcode;
+            switch (descriptor.charAt(0)) {
+                case 'Z':
+                case 'C':
+                case 'I':
+                    opcode = load ? ILOAD : ISTORE;
+                    break;
+                case 'D':
+                    opcode = load ? DLOAD : DSTORE;
+                    break;
+                default:
+                    opcode = load ? ALOAD : ASTORE;
+            }
+            if (index <= 3) {
+                write((load ? 0x1A + (opcode - ILOAD) * 4 : 0x3B + (opcode - ISTORE) * 4) + index);
+            } else if (index > 0xFF) {
+                write(0xC4);
+                write(opcode);
+                writeShort(index);
+            } else {
+                write(opcode);
+                write(index);
+            }
+            adjust(load ? size(descriptor) : -size(descriptor));
+        }
+
+        public void typeInsn(int opcode, String type) {
+            write(opcode);
+            writeShort(classRef(type));
+            adjust(opcode == NEW ? 1 : 0);
+        }
+
+        public void fieldInsn(int opcode, String owner, String name, String descriptor) {
+            write(opcode);
+            writeShort(fieldRef(owner, name, descriptor));
+            int size = size(descriptor);
+            switch (opcode) {
+                case GETSTATIC:
+                    adjust(size);
+                    break;
+                case GETFIELD:
+                    adjust(size - 1);
+                    break;
+                default:
+                    adjust(-size - 1);
+            }
+        }
+
+        public void methodInsn(int opcode, String owner, String name, String descriptor) {
+            int arguments = 0;
+            for (String parameter : parameters(descriptor)) {
+                arguments += size(parameter);
+            }
+            write(opcode);
+            writeShort(methodRef(owner, name, descriptor, opcode == INVOKEINTERFACE));
+            if (opcode == INVOKEINTERFACE) {
+                write(arguments + 1);
+                write(0);
+            }
+            int receiver = opcode == INVOKESTATIC ? 0 : 1;
+            adjust(size(descriptor.substring(descriptor.indexOf(')') + 1)) - arguments - receiver);
+        }
+
+        /**
+         * Jumps to the label, popping the operands of a conditional jump.
+         */
+        public void jump(int opcode, Label label) {
+            int position = length;
+            write(opcode);
+            if (opcode >= IF_ICMPEQ && opcode <= IF_ACMPNE) {
+                adjust(-2);
+            } else if (opcode != GOTO) {
+                adjust(-1);
+            }
+            if (label.stack == -1) {
+                label.stack = stack;
+            }
+            if (label.position != -1) {
+                writeShort(label.position - position);
+            } else {
+                label.branches.add(position);
+                writeShort(0);
+            }
+        }
+
+        /**
+         * Pops an int and jumps to the label of the equal key, or to the
+         * default label if there is none. The keys must be sorted and
+         * distinct. As in javac, a {@code tableswitch} is written if the keys
+         * are dense enough and a {@code lookupswitch} otherwise.
+         */
+        public void switchInsn(Label otherwise, int[] keys, Label[] labels) {
+            int position = length;
+            long range = keys.length == 0 ? 0 : (long) keys[keys.length - 1] - keys[0] + 1;
+            boolean table = keys.length > 0 && 4 + range + 3 * 3 <= 3 + 2L * keys.length + 3L * keys.length;
+            write(table ? TABLESWITCH : LOOKUPSWITCH);
+            adjust(-1);
+            while (length % 4 != 0) {
+                write(0);
+            }
+            switchOffset(position, otherwise);
+            if (table) {
+                writeInt(keys[0]);
+                writeInt(keys[keys.length - 1]);
+                for (int i = 0, key = keys[0]; i < keys.length; key++) {
+                    if (keys[i] == key) {
+                        switchOffset(position, labels[i++]);
+                    } else {
+                        switchOffset(position, otherwise);
+                    }
+                }
+            } else {
+                writeInt(keys.length);
+                for (int i = 0; i < keys.length; i++) {
+                    writeInt(keys[i]);
+                    switchOffset(position, labels[i]);
+                }
+            }
+        }
+
+        private void switchOffset(int position, Label label) {
+            if (label.stack == -1) {
+                label.stack = stack;
+            }
+            if (label.position != -1) {
+                writeInt(label.position - position);
+            } else {
+                label.switches.add(new int[] {position, length});
+                writeInt(0);
+            }
+        }
+
+        /**
+         * Marks the label at the current position, resolving the jumps to it.
+         */
+        public void mark(Label label) {
+            label.position = length;
+            if (label.stack != -1) {
+                stack = label.stack;
+            } else {
+                label.stack = stack;
+            }
+            for (int branch : label.branches) {
+                int offset = label.position - branch;
+                code[branch + 1] = (byte) (offset >> 8);
+                code[branch + 2] = (byte) offset;
+            }
+            label.branches.clear();
+            for (int[] branch : label.switches) {
+                int offset = label.position - branch[0];
+                for (int i = 0; i < 4; i++) {
+                    code[branch[1] + i] = (byte) (offset >> (24 - 8 * i));
+                }
+            }
+            label.switches.clear();
+        }
+
+        /**
+         * Adds the method with its code to the class.
+         */
+        public void end() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void write(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, 2 * length);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void writeShort(int value) {
+            write(value >> 8);
+            write(value);
+        }
+
+        private void writeInt(int value) {
+            writeShort(value >> 16);
+            writeShort(value);
+        }
+
+    }
+
+    /**
+     * Splits the parameters of a method descriptor into their descriptors.
+     */
+    static List<String> parameters(String descriptor) {
+        List<String> parameters = new ArrayList<>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+            parameters.add(descriptor.substring(start, i));
+        }
+        return parameters;
+    }
+
+}
@@ -0,0 +1,705 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an AST into a tree of {@link Node}s which evaluate it exactly as
+ * the {@link Interpreter} does. Each node is specialized for its AST class and
+ * operator when it is compiled, so executing it does not dispatch on the class
+ * of the AST or compare operator strings again, which matters for the bodies
+ * of loops and functions which are executed many times.
+ *
+ * Accesses are compiled with the slots assigned by the {@link Resolver}, so a
+ * source should be resolved before it is compiled.
+ */
+public final class ClosureCompiler implements Ast.Visitor<ClosureCompiler.Node> {
+
+    /**
+     * An executable node, which evaluates its AST in the scope of the frame.
+     */
+    @FunctionalInterface
+    public interface Node {
+
+        Environment.PlcObject execute(Frame frame);
+
+    }
+
+    /**
+     * A node for a condition, which evaluates it to a boolean without creating
+     * an object for its value.
+     */
+    @FunctionalInterface
+    private interface Condition {
+
+        boolean test(Frame frame);
+
+    }
+
+    /**
+     * The state shared by all nodes executed by an interpreter.
+     */
+    public static final class Frame {
+
+        private Scope scope;
+
+        /**
+         * The value of the return statement being completed, or null if none
+         * is. Instead of throwing, a return statement sets this value and each
+         * block stops executing its statements until the function call takes
+         * the value. Only a return outside of any function call is still
+         * thrown as {@link Return}, since nothing else would stop it.
+         */
+        private Environment.PlcObject returning = null;
+        private int calls = 0;
+
+        public Frame(Scope scope) {
+            this.scope = scope;
+        }
+
+        public Scope getScope() {
+            return scope;
+        }
+
+    }
+
+    @Override
+    public Node visit(Ast.Source ast) {
+        Node[] globals = compile(ast.getGlobals());
+        Node[] functions = compile(ast.getFunctions());
+        return frame -> {
+            for (Node global : globals) {
+                global.execute(frame);
+            }
+            for (Node function : functions) {
+                function.execute(frame);
+            }
+            try {
+                return frame.scope.lookupFunction("main", 0).invoke(new ArrayList<>());
+            } catch (Exception e) {
+                throw new RuntimeException(new Exception());
+            }
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Global ast) {
+        String name = ast.getName();
+        if (ast.getValue().isPresent()) {
+            Node value = visit(ast.getValue().get());
+            return frame -> {
+                frame.scope.defineVariable(name, true, value.execute(frame));
+                return Environment.NIL;
+            };
+        }
+        return frame -> {
+            frame.scope.defineVariable(name, false, Environment.NIL);
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Function ast) {
+        String name = ast.getName();
+        List<String> parameters = ast.getParameters();
+        Node[] statements = compile(ast.getStatements());
+        return frame -> {
+            Scope captured = frame.scope;
+            captured.defineFunction(name, parameters.size(), args -> {
+                Scope current = frame.scope;
+                frame.scope = new Scope(captured);
+                for (int i = 0; i < parameters.size(); i++) {
+                    frame.scope.defineVariable(parameters.get(i), true, args.get(i));
+                }
+                frame.calls++;
+                try {
+                    for (Node statement : statements) {
+                        statement.execute(frame);
+                        if (frame.returning != null) {
+                            Environment.PlcObject value = frame.returning;
+                            frame.returning = null;
+                            return value;
+                        }
+                    }
+                } catch (Return e) {
+                    return e.value;
+                } finally {
+                    frame.scope = current;
+                    frame.calls--;
+                }
+                return Environment.NIL;
+            });
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Expression ast) {
+        Node expression = visit(ast.getExpression());
+        return frame -> {
+            expression.execute(frame);
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Declaration ast) {
+        String name = ast.getName();
+        if (ast.getValue().isPresent()) {
+            Node value = visit(ast.getValue().get());
+            return frame -> {
+                frame.scope.defineVariable(name, true, value.execute(frame));
+                return Environment.NIL;
+            };
+        }
+        return frame -> {
+            frame.scope.defineVariable(name, false, Environment.NIL);
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Assignment ast) {
+        if (!ast.getReceiver().getClass().equals(Ast.Expression.Access.class)) {
+            return frame -> {
+                throw new RuntimeException();
+            };
+        }
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        Node value = visit(ast.getValue());
+        if (receiver.getOffset().isPresent()) {
+            Node offset = visit(receiver.getOffset().get());
+            return frame -> {
+                if (!lookupVariable(frame, receiver).getMutable()) {
+                    throw new RuntimeException();
+                }
+                BigInteger element = (BigInteger) value.execute(frame).getValue();
+                int index = Integer.valueOf(String.valueOf((BigInteger) offset.execute(frame).getValue()));
+                List<BigInteger> list = (List<BigInteger>) lookupVariable(frame, receiver).getValue().getValue();
+                if (index >= 0 && index < list.size()) {
+                    list.set(index, element);
+                }
+                return Environment.NIL;
+            };
+        }
+        return frame -> {
+            Environment.Variable variable = lookupVariable(frame, receiver);
+            if (!variable.getMutable()) {
+                throw new RuntimeException();
+            }
+            variable.setValue(value.execute(frame));
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Statement.If ast) {
+        Condition condition = condition(ast.getCondition());
+        Node thenBlock = block(ast.getThenStatements());
+        Node elseBlock = block(ast.getElseStatements());
+        return frame -> {
+            if (condition.test(frame)) {
+                thenBlock.execute(frame);
+            } else {
+                elseBlock.execute(frame);
+            }
+            return Environment.NIL;
+        };
+    }
+
+    /**
+     * Evaluates the condition once and executes the block of the first case
+     * whose value equals it, or that of the default case if none does. When
+     * every case value is a literal, the case is found in a table built when
+     * compiling: an array indexed by the value for integers in a dense range,
+     * and a hash map otherwise. Other case values are evaluated in order until
+     * one matches.
+     */
+    @Override
+    public Node visit(Ast.Statement.Switch ast) {
+        Node condition = visit(ast.getCondition());
+        List<Ast.Statement.Case> cases = new ArrayList<>();
+        Node otherwise = block(new ArrayList<>());
+        boolean constant = true;
+        for (Ast.Statement.Case caseStmt : ast.getCases()) {
+            if (!caseStmt.getValue().isPresent()) {
+                otherwise = block(caseStmt.getStatements());
+                break;
+            }
+            cases.add(caseStmt);
+            constant &= caseStmt.getValue().get() instanceof Ast.Expression.Literal;
+        }
+        Node defaultBlock = otherwise;
+        if (!constant) {
+            Node[] values = new Node[cases.size()];
+            Node[] blocks = new Node[cases.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = visit(cases.get(i).getValue().get());
+                blocks[i] = block(cases.get(i).getStatements());
+            }
+            return frame -> {
+                Object value = condition.execute(frame).getValue();
+                for (int i = 0; i < values.length; i++) {
+                    if (value.equals(values[i].execute(frame).getValue())) {
+                        return blocks[i].execute(frame);
+                    }
+                }
+                return defaultBlock.execute(frame);
+            };
+        }
+        Map<Object, Node> table = new HashMap<>();
+        boolean integers = true;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Ast.Statement.Case caseStmt : cases) {
+            Object literal = ((Ast.Expression.Literal) caseStmt.getValue().get()).getLiteral();
+            Object key = literal == null ? Environment.NIL.getValue() : literal;
+            if (!table.containsKey(key)) {
+                table.put(key, block(caseStmt.getStatements()));
+                if (key instanceof BigInteger && ((BigInteger) key).bitLength() < Integer.SIZE) {
+                    min = Math.min(min, ((BigInteger) key).longValue());
+                    max = Math.max(max, ((BigInteger) key).longValue());
+                } else {
+                    integers = false;
+                }
+            }
+        }
+        if (!table.isEmpty() && integers && max - min < 2L * table.size() + 8) {
+            long offset = min;
+            Node[] dense = new Node[(int) (max - min + 1)];
+            table.forEach((key, block) -> dense[(int) (((BigInteger) key).longValue() - offset)] = block);
+            return frame -> {
+                Environment.PlcObject value = condition.execute(frame);
+                long index = value.isSmallInteger() ? value.getInteger() - offset : -1;
+                Node block = index >= 0 && index < dense.length ? dense[(int) index] : null;
+                return (block != null ? block : defaultBlock).execute(frame);
+            };
+        }
+        return frame -> table.getOrDefault(condition.execute(frame).getValue(), defaultBlock).execute(frame);
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Case ast) {
+        Node[] statements = compile(ast.getStatements());
+        return frame -> {
+            executeStatements(frame, statements);
+            return Environment.NIL;
+        };
+    }
+
+    /**
+     * Executes the body of the loop in the current scope if it declares no
+     * variables. Otherwise a single scope is created the first time the body
+     * is executed, and cleared for each later iteration instead of creating
+     * another. The condition is evaluated in the enclosing scope, where the
+     * {@link Resolver} expects it.
+     */
+    @Override
+    public Node visit(Ast.Statement.While ast) {
+        Condition condition = condition(ast.getCondition());
+        Node[] statements = compile(ast.getStatements());
+        if (!Resolver.declares(ast.getStatements())) {
+            return frame -> {
+                while (condition.test(frame)) {
+                    executeStatements(frame, statements);
+                    if (frame.returning != null) {
+                        break;
+                    }
+                }
+                return Environment.NIL;
+            };
+        }
+        return frame -> {
+            Scope outer = frame.scope;
+            Scope scope = null;
+            try {
+                while (condition.test(frame)) {
+                    if (scope == null) {
+                        scope = new Scope(outer);
+                    } else {
+                        scope.clear();
+                    }
+                    frame.scope = scope;
+                    executeStatements(frame, statements);
+                    frame.scope = outer;
+                    if (frame.returning != null) {
+                        break;
+                    }
+                }
+            } finally {
+                frame.scope = outer;
+            }
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Return ast) {
+        Node value = visit(ast.getValue());
+        return frame -> {
+            Environment.PlcObject object = value.execute(frame);
+            if (frame.calls == 0) {
+                throw new Return(object);
+            }
+            frame.returning = object;
+            return Environment.NIL;
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Literal ast) {
+        Environment.PlcObject value = Environment.create(ast.getLiteral() == null ? Environment.NIL.getValue() : ast.getLiteral());
+        return frame -> value;
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Group ast) {
+        Node expression = visit(ast.getExpression());
+        return frame -> {
+            Environment.PlcObject value = expression.execute(frame);
+            if (value.isSmallInteger()) {
+                return Environment.createInteger(value.getInteger());
+            }
+            return Environment.create(value.getValue());
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Binary ast) {
+        switch (ast.getOperator()) {
+            case "&&":
+            case "||":
+            case "<":
+            case "<=":
+            case ">":
+            case ">=": {
+                Condition condition = condition(ast);
+                return frame -> Environment.createBoolean(condition.test(frame));
+            }
+        }
+        Node left = visit(ast.getLeft());
+        Node right = visit(ast.getRight());
+        switch (ast.getOperator()) {
+            case "==": {
+                Environment.PlcObject value = Environment.create(ast.getLeft().equals(ast.getRight()));
+                return frame -> value;
+            }
+            case "!=": {
+                Environment.PlcObject value = Environment.create(!ast.getLeft().equals(ast.getRight()));
+                return frame -> value;
+            }
+            case "+":
+                return frame -> add(frame, left.execute(frame), right);
+            case "-":
+                return frame -> subtract(frame, right.execute(frame), left.execute(frame), right);
+            case "*":
+                return frame -> multiply(frame, right.execute(frame), left.execute(frame), right);
+            case "/":
+                return frame -> divide(frame, right.execute(frame), left.execute(frame), right);
+            default:
+                return frame -> {
+                    throw new RuntimeException();
+                };
+        }
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            Node offset = visit(ast.getOffset().get());
+            return frame -> {
+                Environment.PlcObject access = offset.execute(frame);
+                if (access.getValue().getClass() != BigInteger.class) {
+                    throw new Return(access);
+                }
+                List<BigInteger> list = (List<BigInteger>) lookupVariable(frame, ast).getValue().getValue();
+                int index = Integer.valueOf(String.valueOf((BigInteger) access.getValue()));
+                return Environment.create(list.get(index));
+            };
+        }
+        return frame -> lookupVariable(frame, ast).getValue();
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Function ast) {
+        if (ast.getArguments().isEmpty()) {
+            Environment.PlcObject value = Environment.create(ast.getName());
+            return frame -> value;
+        }
+        Node[] arguments = compile(ast.getArguments());
+        return frame -> {
+            Environment.PlcObject[] values = new Environment.PlcObject[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].execute(frame);
+            }
+            //reuses the function from the last call unless the scope chain now resolves it differently
+            Scope.FunctionHandle handle = ast.getHandle();
+            if (handle == null || !handle.isValid(frame.scope)) {
+                handle = frame.scope.resolveFunction(ast.getName(), values.length);
+                ast.setHandle(handle);
+            }
+            return handle.getFunction().invoke(Arrays.asList(values));
+        };
+    }
+
+    @Override
+    public Node visit(Ast.Expression.PlcList ast) {
+        Node[] values = compile(ast.getValues());
+        return frame -> {
+            List<Object> list = new ArrayList<>(values.length);
+            for (Node value : values) {
+                list.add(value.execute(frame).getValue());
+            }
+            return Environment.create(list);
+        };
+    }
+
+    private Node[] compile(List<? extends Ast> asts) {
+        Node[] nodes = new Node[asts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = visit(asts.get(i));
+        }
+        return nodes;
+    }
+
+    /**
+     * Compiles the statements of a block into a node which executes them in a
+     * new scope, or in the current scope if they declare no variables, as the
+     * {@link Resolver} expects.
+     */
+    private Node block(List<Ast.Statement> statements) {
+        Node[] nodes = compile(statements);
+        if (nodes.length == 0) {
+            return frame -> Environment.NIL;
+        } else if (!Resolver.declares(statements)) {
+            return frame -> {
+                executeStatements(frame, nodes);
+                return Environment.NIL;
+            };
+        }
+        return frame -> {
+            frame.scope = new Scope(frame.scope);
+            try {
+                executeStatements(frame, nodes);
+            } finally {
+                frame.scope = frame.scope.getParent();
+            }
+            return Environment.NIL;
+        };
+    }
+
+    /**
+     * Executes the statements, stopping early if one of them returns.
+     */
+    private static void executeStatements(Frame frame, Node[] statements) {
+        for (Node statement : statements) {
+            statement.execute(frame);
+            if (frame.returning != null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Looks up the variable of an access using the slot from the {@link
+     * Resolver} if it has one, checking that the variable in that slot has the
+     * right name before falling back to looking it up by name.
+     */
+    private static Environment.Variable lookupVariable(Frame frame, Ast.Expression.Access ast) {
+        if (ast.getSlot() != -1) {
+            Environment.Variable variable = frame.scope.lookupVariable(ast.getDepth(), ast.getSlot());
+            if (variable != null && variable.getName().equals(ast.getName())) {
+                return variable;
+            }
+        }
+        return frame.scope.lookupVariable(ast.getName());
+    }
+
+    /**
+     * Compiles an expression which must evaluate to a boolean. Logical and
+     * comparison operators, including those in groups, are compiled into
+     * conditions directly, so nested operators pass booleans to each other
+     * instead of objects. The right operand of a logical operator is only
+     * evaluated if the left one does not decide the result.
+     */
+    private Condition condition(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Group) {
+            return condition(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            switch (binary.getOperator()) {
+                case "&&": {
+                    Condition left = condition(binary.getLeft());
+                    Condition right = condition(binary.getRight());
+                    return frame -> left.test(frame) && right.test(frame);
+                }
+                case "||": {
+                    Condition left = condition(binary.getLeft());
+                    Condition right = condition(binary.getRight());
+                    return frame -> left.test(frame) || right.test(frame);
+                }
+                case "<":
+                case "<=":
+                case ">":
+                case ">=": {
+                    Node left = visit(binary.getLeft());
+                    Node right = visit(binary.getRight());
+                    switch (binary.getOperator()) {
+                        case "<":
+                            return frame -> compare(frame, left.execute(frame), right) < 0;
+                        case "<=":
+                            return frame -> compare(frame, left.execute(frame), right) <= 0;
+                        case ">":
+                            return frame -> compare(frame, left.execute(frame), right) > 0;
+                        default:
+                            return frame -> compare(frame, left.execute(frame), right) >= 0;
+                    }
+                }
+            }
+        }
+        Node node = visit(ast);
+        return frame -> requireType(Boolean.class, node.execute(frame));
+    }
+
+    /**
+     * Compares the left value to the value of the right node, which is only
+     * executed once the left value is known to be comparable. Integers which
+     * fit in a long are compared without converting them.
+     */
+    private static int compare(Frame frame, Environment.PlcObject left, Node right) {
+        if (left.isSmallInteger()) {
+            Environment.PlcObject value = right.execute(frame);
+            if (value.isSmallInteger()) {
+                return Long.compare(left.getInteger(), value.getInteger());
+            }
+            return ((BigInteger) left.getValue()).compareTo(requireType(BigInteger.class, value));
+        }
+        return requireType(Comparable.class, left).compareTo(requireType(left.getValue().getClass(), right.execute(frame)));
+    }
+
+    private static Environment.PlcObject add(Frame frame, Environment.PlcObject left, Node right) {
+        if (left.isSmallInteger()) {
+            Environment.PlcObject value = right.execute(frame);
+            if (value.isSmallInteger()) {
+                try {
+                    return Environment.createInteger(Math.addExact(left.getInteger(), value.getInteger()));
+                } catch (ArithmeticException e) {
+                    // overflows into a BigInteger below
+                }
+            }
+            return Environment.create(((BigInteger) left.getValue()).add(requireType(BigInteger.class, value)));
+        } else if (left.getValue() instanceof String) {
+            return Environment.create("" + left.getValue() + right.execute(frame).getValue());
+        } else if (left.getValue() instanceof BigInteger) {
+            return Environment.create(((BigInteger) left.getValue()).add(requireType(BigInteger.class, right.execute(frame))));
+        } else if (left.getValue() instanceof BigDecimal) {
+            return Environment.create(((BigDecimal) left.getValue()).add(requireType(BigDecimal.class, right.execute(frame))));
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Subtracts the right value from the left value. The right operand has
+     * already been executed once before the left one, and integers execute it
+     * again for the value they use.
+     */
+    private static Environment.PlcObject subtract(Frame frame, Environment.PlcObject right, Environment.PlcObject left, Node again) {
+        if (left.isSmallInteger()) {
+            Environment.PlcObject value = again.execute(frame);
+            if (value.isSmallInteger()) {
+                try {
+                    return Environment.createInteger(Math.subtractExact(left.getInteger(), value.getInteger()));
+                } catch (ArithmeticException e) {
+                    // overflows into a BigInteger below
+                }
+            }
+            return Environment.create(((BigInteger) left.getValue()).subtract(requireType(BigInteger.class, value)));
+        } else if (left.getValue() instanceof BigInteger) {
+            return Environment.create(((BigInteger) left.getValue()).subtract(requireType(BigInteger.class, again.execute(frame))));
+        } else if (left.getValue() instanceof BigDecimal) {
+            return Environment.create(((BigDecimal) left.getValue()).subtract(requireType(BigDecimal.class, right)));
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Multiplies the values, executing the right operand again for integers
+     * as in {@link #subtract}.
+     */
+    private static Environment.PlcObject multiply(Frame frame, Environment.PlcObject right, Environment.PlcObject left, Node again) {
+        if (left.isSmallInteger()) {
+            Environment.PlcObject value = again.execute(frame);
+            if (value.isSmallInteger()) {
+                try {
+                    return Environment.createInteger(Math.multiplyExact(left.getInteger(), value.getInteger()));
+                } catch (ArithmeticException e) {
+                    // overflows into a BigInteger below
+                }
+            }
+            return Environment.create(((BigInteger) left.getValue()).multiply(requireType(BigInteger.class, value)));
+        } else if (left.getValue() instanceof BigInteger) {
+            return Environment.create(((BigInteger) left.getValue()).multiply(requireType(BigInteger.class, again.execute(frame))));
+        } else if (left.getValue() instanceof BigDecimal) {
+            return Environment.create(((BigDecimal) left.getValue()).multiply(requireType(BigDecimal.class, right)));
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Divides the values, executing the right operand again for integers as
+     * in {@link #subtract}. Decimals are rounded half to even.
+     */
+    private static Environment.PlcObject divide(Frame frame, Environment.PlcObject right, Environment.PlcObject left, Node again) {
+        if (right.isSmallInteger() ? right.getInteger() == 0 : right.getValue().toString().equals("0")) {
+            throw new RuntimeException();
+        }
+        if (left.isSmallInteger()) {
+            Environment.PlcObject value = again.execute(frame);
+            // dividing by zero or overflowing is left to BigInteger
+            if (value.isSmallInteger() && value.getInteger() != 0
+                    && !(left.getInteger() == Long.MIN_VALUE && value.getInteger() == -1)) {
+                return Environment.createInteger(left.getInteger() / value.getInteger());
+            }
+            return Environment.create(((BigInteger) left.getValue()).divide(requireType(BigInteger.class, value)));
+        } else if (left.getValue() instanceof BigInteger) {
+            return Environment.create(((BigInteger) left.getValue()).divide(requireType(BigInteger.class, again.execute(frame))));
+        } else if (left.getValue() instanceof BigDecimal) {
+            return Environment.create(((BigDecimal) left.getValue()).divide(requireType(BigDecimal.class, right), BigDecimal.ROUND_HALF_EVEN));
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Helper function to ensure an object is of the appropriate type.
+     */
+    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
+    }
+
+    /**
+     * Exception class for returning values, which is only thrown by a return
+     * statement outside of a function call and when accessing a list with an
+     * offset which is not an integer. It is stackless since it is used for
+     * control flow rather than errors.
+     */
+    private static class Return extends RuntimeException {
+
+        private final Environment.PlcObject value;
+
+        private Return(Environment.PlcObject value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package plc.project;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -8,10 +10,59 @@ import java.util.Map;
 
 public final class Environment {
 
+    /**
+     * Creates an object for the value. Booleans, nil, small integers and ASCII
+     * characters are cached, and objects for the other primitive values share
+     * one empty scope and type instead of allocating their own, since nothing
+     * defines members on them. Any other value gets a scope of its own.
+     */
     public static PlcObject create(Object value) {
+        if (value instanceof Boolean) {
+            return createBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            if (integer.bitLength() < Long.SIZE) {
+                long small = integer.longValue();
+                if (small >= MIN_CACHED && small <= MAX_CACHED) {
+                    return INTEGERS[(int) (small - MIN_CACHED)];
+                }
+                return new PlcObject(UNKNOWN, VALUE_SCOPE, small, integer);
+            }
+        } else if (value instanceof Character) {
+            char character = (Character) value;
+            if (character < CHARACTERS.length) {
+                return CHARACTERS[character];
+            }
+        } else if (value == NIL.getValue()) {
+            return UNKNOWN_NIL;
+        }
+        if (value instanceof BigInteger || value instanceof BigDecimal
+                || value instanceof Character || value instanceof String) {
+            return new PlcObject(UNKNOWN, VALUE_SCOPE, value);
+        }
         return new PlcObject(new Scope(null), value);
     }
 
+    /**
+     * Creates an Integer object for a value which fits in a long, which is
+     * only converted to a {@link BigInteger} when {@link PlcObject#getValue()}
+     * is called. Arithmetic on such objects can be done with longs instead.
+     */
+    public static PlcObject createInteger(long value) {
+        if (value >= MIN_CACHED && value <= MAX_CACHED) {
+            return INTEGERS[(int) (value - MIN_CACHED)];
+        }
+        return new PlcObject(UNKNOWN, VALUE_SCOPE, value, null);
+    }
+
+    /**
+     * Returns the shared object for a boolean, so evaluating a condition never
+     * allocates one.
+     */
+    public static PlcObject createBoolean(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
     public static final PlcObject NIL = new PlcObject(Type.NIL, new Scope(null), new Object() {
 
         @Override
@@ -21,6 +72,27 @@ public final class Environment {
 
     });
 
+    private static final Scope VALUE_SCOPE = new Scope(null);
+    private static final Type UNKNOWN = new Type("Unknown", "Unknown", VALUE_SCOPE);
+
+    private static final PlcObject TRUE = new PlcObject(UNKNOWN, VALUE_SCOPE, true);
+    private static final PlcObject FALSE = new PlcObject(UNKNOWN, VALUE_SCOPE, false);
+    private static final PlcObject UNKNOWN_NIL = new PlcObject(UNKNOWN, VALUE_SCOPE, NIL.getValue());
+
+    private static final int MIN_CACHED = -128;
+    private static final int MAX_CACHED = 1023;
+    private static final PlcObject[] INTEGERS = new PlcObject[MAX_CACHED - MIN_CACHED + 1];
+    private static final PlcObject[] CHARACTERS = new PlcObject[128];
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            INTEGERS[i] = new PlcObject(UNKNOWN, VALUE_SCOPE, i + MIN_CACHED, BigInteger.valueOf(i + MIN_CACHED));
+        }
+        for (char c = 0; c < CHARACTERS.length; c++) {
+            CHARACTERS[c] = new PlcObject(UNKNOWN, VALUE_SCOPE, c);
+        }
+    }
+
     private static final Map<String, Type> TYPES = new HashMap<>();
 
     public static Type getType(String name) {
@@ -93,7 +165,14 @@ public final class Environment {
 
         private final Type type;
         private final Scope scope;
-        private final Object value;
+        private Object value;
+
+        /**
+         * The value of an Integer which fits in a long, in which case value may
+         * be null until it is first needed.
+         */
+        private final long integer;
+        private final boolean small;
 
         public PlcObject(Scope scope, Object value) {
             this(new Type("Unknown", "Unknown", scope), scope, value);
@@ -103,6 +182,16 @@ public final class Environment {
             this.type = type;
             this.scope = scope;
             this.value = value;
+            this.integer = 0;
+            this.small = false;
+        }
+
+        private PlcObject(Type type, Scope scope, long integer, BigInteger value) {
+            this.type = type;
+            this.scope = scope;
+            this.value = value;
+            this.integer = integer;
+            this.small = true;
         }
 
         public Type getType() {
@@ -110,15 +199,30 @@ public final class Environment {
         }
 
         public Object getValue() {
+            if (value == null && small) {
+                value = BigInteger.valueOf(integer);
+            }
             return value;
         }
 
+        /**
+         * Returns true if this is an Integer whose value is available as a
+         * long through {@link #getInteger()}.
+         */
+        public boolean isSmallInteger() {
+            return small;
+        }
+
+        public long getInteger() {
+            return integer;
+        }
+
         @Override
         public String toString() {
             return "Object{" +
                     "type=" + type +
                     ", scope=" + scope +
-                    ", value=" + value +
+                    ", value=" + getValue() +
                     '}';
         }
 
@@ -1,7 +1,9 @@
 package plc.project;
 
 import java.io.PrintWriter;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public final class Generator implements Ast.Visitor<Void> {
 
@@ -140,15 +142,29 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Prints a Java switch, which javac compiles to a {@code tableswitch} or
+     * {@code lookupswitch} for int and char conditions. Cases after the
+     * default case or repeating the literal value of an earlier case are never
+     * taken, and are left out since javac rejects duplicate labels.
+     */
     @Override
     public Void visit(Ast.Statement.Switch ast) {
         print("switch (");
         visit(ast.getCondition());
         print(") {");
         indent++;
-        for(int i=0;i<ast.getCases().size();i++) {
+        Set<Object> values = new HashSet<>();
+        for (Ast.Statement.Case caseStmt : ast.getCases()) {
+            if (caseStmt.getValue().isPresent() && caseStmt.getValue().get() instanceof Ast.Expression.Literal
+                    && !values.add(((Ast.Expression.Literal) caseStmt.getValue().get()).getLiteral())) {
+                continue;
+            }
             newline(indent);
-            visit(ast.getCases().get(i));
+            visit(caseStmt);
+            if (!caseStmt.getValue().isPresent()) {
+                break;
+            }
         }
         indent--;
         newline(indent);
@@ -156,29 +172,38 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Prints a case, whose statements are in a block of their own if they
+     * declare variables, since each case has its own scope.
+     */
     @Override
     public Void visit(Ast.Statement.Case ast) {
         if (ast.getValue().isPresent()){
             print("case ");
             visit(ast.getValue().get());
             print(":");
-            indent++;
-            for (int i=0; i<ast.getStatements().size();i++){
-                newline(indent);
-                visit(ast.getStatements().get(i));
-            }
-            newline(indent);
-            print("break;");
         }
         else{
             print("default:");
-            indent++;
-            for (int i=0; i<ast.getStatements().size();i++){
-                newline(indent);
-                visit(ast.getStatements().get(i) );
-            }
+        }
+        boolean block = ast.getStatements().stream().anyMatch(Ast.Statement.Declaration.class::isInstance);
+        if (block) {
+            print(" {");
+        }
+        indent++;
+        for (int i=0; i<ast.getStatements().size();i++){
+            newline(indent);
+            visit(ast.getStatements().get(i));
+        }
+        if (ast.getValue().isPresent()) {
+            newline(indent);
+            print("break;");
         }
         indent--;
+        if (block) {
+            newline(indent);
+            print("}");
+        }
         return null;
     }
 
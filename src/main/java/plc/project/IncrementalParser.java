@@ -0,0 +1,236 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A parsed source which can be edited without lexing and parsing all of it
+ * again. Each global and function is an <em>item</em>, which owns its tokens
+ * and the text from its first token up to the first token of the next item.
+ * An edit within a single item relexes only the text of that item and
+ * reparses only that item, while the tokens of every other item are copied
+ * with their indices shifted and their subtrees are reused as is.
+ *
+ * The result is always the same as parsing the edited text from scratch. If
+ * an edit spans several items, changes the kind of its item, leaves it not
+ * parsing as exactly one item, or could change how the neighbouring text is
+ * lexed, the whole text is parsed again instead, which also throws the same
+ * {@link ParseException} for invalid sources.
+ *
+ * Instances are immutable, so an edit which fails to parse leaves the
+ * previous instance usable.
+ */
+public final class IncrementalParser {
+
+    private final Ast.Source source;
+    private final TokenBuffer tokens;
+
+    /**
+     * The index of the first token of each item, followed by the number of
+     * tokens, or null if the tokens could not be split into items matching
+     * the source.
+     */
+    private final int[] items;
+
+    /**
+     * Creates an incremental parser for a source which was parsed from the
+     * given tokens, which must have been lexed from text such as with {@link
+     * TableLexer#lexBuffer()}.
+     */
+    public IncrementalParser(Ast.Source source, TokenBuffer tokens) {
+        if (tokens.getSource() == null) {
+            throw new IllegalArgumentException("The tokens of an incremental parser require a source.");
+        }
+        this.source = source;
+        this.tokens = tokens;
+        this.items = findItems(source, tokens);
+    }
+
+    /**
+     * Lexes and parses the input from scratch.
+     */
+    public static IncrementalParser parse(String input) throws ParseException {
+        TokenBuffer tokens = new TableLexer(input).lexBuffer();
+        return new IncrementalParser(new Parser(tokens).parseSource(), tokens);
+    }
+
+    public Ast.Source getSource() {
+        return source;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Replaces the removed characters at offset with the inserted text and
+     * returns the parser for the edited text.
+     */
+    public IncrementalParser edit(int offset, int removed, String inserted) throws ParseException {
+        String text = tokens.getSource().toString();
+        Objects.checkFromIndexSize(offset, removed, text.length());
+        String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+        if (items == null || items.length == 1) {
+            return parse(edited);
+        }
+        int item = 0;
+        for (int high = items.length - 2; item < high; ) {
+            int middle = (item + high + 1) >>> 1;
+            if (start(middle) <= offset) {
+                item = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int start = start(item);
+        int end = item + 1 < items.length - 1 ? start(item + 1) : text.length();
+        int shift = inserted.length() - removed;
+        if (offset + removed > end
+                || start > 0 && !isWhitespace(edited.charAt(start - 1))
+                || end + shift < edited.length() && (end + shift == start || !isWhitespace(edited.charAt(end + shift - 1)))) {
+            return parse(edited);
+        }
+        TokenBuffer region;
+        try {
+            region = new TableLexer(edited.subSequence(start, end + shift)).lexBuffer();
+        } catch (ParseException e) {
+            return parse(edited);
+        }
+        TokenBuffer spliced = new TokenBuffer(edited);
+        spliced.addAll(tokens, 0, items[item], 0);
+        spliced.addAll(region, 0, region.size(), start);
+        spliced.addAll(tokens, items[item + 1], tokens.size(), shift);
+        int[] splicedItems = items.clone();
+        for (int i = item + 1; i < splicedItems.length; i++) {
+            splicedItems[i] += region.size() - (items[item + 1] - items[item]);
+        }
+        Ast.Source reparsed = reparse(spliced, splicedItems, item);
+        if (reparsed == null) {
+            return parse(edited);
+        }
+        return new IncrementalParser(reparsed, spliced, splicedItems);
+    }
+
+    private IncrementalParser(Ast.Source source, TokenBuffer tokens, int[] items) {
+        this.source = source;
+        this.tokens = tokens;
+        this.items = items;
+    }
+
+    /**
+     * Reparses the item of the spliced tokens, returning a source with the
+     * new subtree in place of the old one, or null if the tokens of the item
+     * are no longer exactly one item of the same kind.
+     */
+    private Ast.Source reparse(TokenBuffer spliced, int[] splicedItems, int item) {
+        int start = splicedItems[item];
+        int end = splicedItems[item + 1];
+        if (start == end) {
+            return null;
+        }
+        Parser parser = new Parser(spliced, start, end);
+        List<Ast.Global> globals = source.getGlobals();
+        List<Ast.Function> functions = source.getFunctions();
+        try {
+            if (item < globals.size()) {
+                Token.Kind kind = spliced.getKind(start);
+                if (kind != Token.Kind.LIST && kind != Token.Kind.VAR && kind != Token.Kind.VAL) {
+                    return null;
+                }
+                Ast.Global global = parser.parseBoundedGlobal();
+                if (global == null) {
+                    return null;
+                }
+                globals = new ArrayList<>(globals);
+                globals.set(item, global);
+            } else {
+                if (spliced.getKind(start) != Token.Kind.FUN) {
+                    return null;
+                }
+                Ast.Function function = parser.parseBoundedFunction();
+                if (function == null) {
+                    return null;
+                }
+                functions = new ArrayList<>(functions);
+                functions.set(item - globals.size(), function);
+            }
+        } catch (ParseException | IndexOutOfBoundsException e) {
+            return null;
+        }
+        return new Ast.Source(globals, functions);
+    }
+
+    /**
+     * Returns the offset of the text of the item, which for the first item
+     * includes any whitespace before it.
+     */
+    private int start(int item) {
+        return item == 0 ? 0 : tokens.getIndex(items[item]);
+    }
+
+    /**
+     * Splits the tokens into items, where a global ends at the next {@code ;}
+     * and a function ends at the {@code END} matching its {@code FUN}, as in
+     * {@link Parser#parseSource(java.util.concurrent.ForkJoinPool)}. Returns
+     * null unless the items are the globals and then the functions of the
+     * source.
+     */
+    private static int[] findItems(Ast.Source source, TokenBuffer tokens) {
+        int count = source.getGlobals().size() + source.getFunctions().size();
+        int[] items = new int[count + 1];
+        int i = 0;
+        for (int item = 0; item < count; item++) {
+            items[item] = i;
+            if (i == tokens.size()) {
+                return null;
+            }
+            Token.Kind kind = tokens.getKind(i);
+            if (item < source.getGlobals().size()) {
+                if (kind != Token.Kind.LIST && kind != Token.Kind.VAR && kind != Token.Kind.VAL) {
+                    return null;
+                }
+                while (i < tokens.size() && tokens.getKind(i) != Token.Kind.SEMICOLON) {
+                    i++;
+                }
+                if (i == tokens.size()) {
+                    return null;
+                }
+                i++;
+            } else {
+                if (kind != Token.Kind.FUN) {
+                    return null;
+                }
+                int depth = 0;
+                do {
+                    switch (tokens.getKind(i)) {
+                        case FUN:
+                        case IF:
+                        case WHILE:
+                        case SWITCH:
+                            depth++;
+                            break;
+                        case END:
+                            depth--;
+                            break;
+                    }
+                    i++;
+                } while (depth > 0 && i < tokens.size());
+                if (depth > 0) {
+                    return null;
+                }
+            }
+        }
+        items[count] = i;
+        return i == tokens.size() ? items : null;
+    }
+
+    /**
+     * Returns true for the whitespace skipped by the lexer, which ends any
+     * token before it.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\b' || c == '\n' || c == '\r' || c == '\t' || c == '\u000B' || c == '\f';
+    }
+
+}
@@ -0,0 +1,204 @@
+package plc.project;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the Java source printed by {@link Generator} by compiling it with the
+ * system {@link JavaCompiler} entirely in memory and loading the classes with
+ * a {@link ProgramClassLoader}, so nothing is written to disk.
+ *
+ * Compiled classes are cached by a hash of the Java source, and by a hash of
+ * the {@link AstWriter} encoding of an AST, so submitting the same program
+ * again only loads and runs it, without optimizing, generating or compiling
+ * it. The cache is shared by all calls to the same runner, and evicts the
+ * least recently used programs once it holds its maximum number of entries.
+ */
+public final class JavacRunner {
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final Map<String, Map<String, byte[]>> cache;
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    public JavacRunner() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public JavacRunner(int maxEntries) {
+        cache = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, byte[]>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+                return size() > maxEntries;
+            }
+
+        });
+    }
+
+    /**
+     * Generates the Java source for an analyzed source, after optimizing it
+     * with the {@link Optimizer}, and runs it, returning the result of its
+     * main function. An AST which was run before is found in the cache by its
+     * encoding, so it is not optimized or generated again.
+     */
+    public int run(Ast.Source ast) {
+        String key = "ast:" + hash(AstWriter.serialize(ast));
+        Map<String, byte[]> classes = cache.get(key);
+        if (classes == null) {
+            StringWriter writer = new StringWriter();
+            new Generator(new PrintWriter(writer)).visit(Optimizer.optimize(ast));
+            classes = compile(writer.toString());
+            cache.put(key, classes);
+        }
+        return run(classes);
+    }
+
+    /**
+     * Compiles the Java source of a class named {@code Main} unless it is
+     * already cached, then invokes its {@code main()} method on a new instance.
+     */
+    public int run(String source) {
+        return run(compile(source));
+    }
+
+    private int run(Map<String, byte[]> classes) {
+        ProgramClassLoader loader = new ProgramClassLoader(classes);
+        try {
+            Class<?> main = loader.loadClass("Main");
+            Method method = main.getDeclaredMethod("main");
+            method.setAccessible(true);
+            return (Integer) method.invoke(main.getDeclaredConstructor().newInstance());
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the class files of the Java source by binary name, compiling it
+     * only if the same source has not been compiled by this runner before.
+     */
+    public Map<String, byte[]> compile(String source) {
+        String key = hash(source);
+        Map<String, byte[]> classes = cache.get(key);
+        if (classes == null) {
+            classes = Collections.unmodifiableMap(javac(source));
+            cache.put(key, classes);
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the number of times javac has been invoked, which does not
+     * include sources found in the cache.
+     */
+    public int getCompilations() {
+        return compilations.get();
+    }
+
+    private Map<String, byte[]> javac(String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler is available, which requires running on a JDK.");
+        }
+        compilations.incrementAndGet();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> outputs = new HashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        outputs.put(className, output);
+                        return output;
+                    }
+
+                };
+            }
+
+        };
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("mem:///Main.java"), JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+
+        };
+        boolean success = compiler.getTask(null, manager, diagnostics, null, null, Collections.singletonList(file)).call();
+        try {
+            manager.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!success) {
+            StringBuilder message = new StringBuilder("Compilation failed:");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                message.append(System.lineSeparator()).append("line ").append(diagnostic.getLineNumber())
+                        .append(": ").append(diagnostic.getMessage(null));
+            }
+            throw new RuntimeException(message.toString());
+        }
+        Map<String, byte[]> classes = new HashMap<>();
+        outputs.forEach((name, output) -> classes.put(name, output.toByteArray()));
+        return classes;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the text as hexadecimal.
+     */
+    static String hash(String text) {
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the bytes as hexadecimal.
+     */
+    static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package plc.project;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.sql.SQLOutput;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -216,20 +220,48 @@ public final class Lexer {
      */
     public static final class CharStream {
 
-        private final String input;
+        private final CharSequence input;
+        private final Reader reader;
+        private char[] buffer;
+        private int offset = 0;
+        private int limit = 0;
+        private boolean eof = false;
         private int index = 0;
         private int length = 0;
 
-        public CharStream(String input) {
+        public CharStream(CharSequence input) {
             this.input = input;
+            this.reader = null;
+        }
+
+        /**
+         * Creates a char stream which reads its input incrementally from the
+         * reader. Only the characters from the start of the current token
+         * onwards are buffered, and {@link #index} remains the index in the
+         * whole input.
+         */
+        public CharStream(Reader reader) {
+            this.input = null;
+            this.reader = reader;
+            this.buffer = new char[8192];
         }
 
         public boolean has(int offset) {
-            return index + offset < input.length();
+            if (input != null) {
+                return index + offset < input.length();
+            }
+            return index + offset < this.offset + limit || fill(index + offset);
+        }
+
+        public int getIndex() {
+            return index;
         }
 
         public char get(int offset) {
-            return input.charAt(index + offset);
+            if (input != null) {
+                return input.charAt(index + offset);
+            }
+            return buffer[index + offset - this.offset];
         }
 
         public void advance() {
@@ -244,9 +276,42 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip();
-            return new Token(type, input.substring(start, index), start);
+            if (input != null) {
+                return new Token(type, input.subSequence(start, index), start);
+            }
+            return new Token(type, new String(buffer, start - offset, index - start), start);
+        }
+
+        /**
+         * Reads from the reader until the character at the given index is
+         * buffered, returning false if the input ends first. Characters before
+         * the start of the current token are discarded to make room.
+         */
+        private boolean fill(int position) {
+            int start = index - length;
+            if (start > offset) {
+                System.arraycopy(buffer, start - offset, buffer, 0, offset + limit - start);
+                limit -= start - offset;
+                offset = start;
+            }
+            while (!eof && position >= offset + limit) {
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+                try {
+                    int read = reader.read(buffer, limit, buffer.length - limit);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        limit += read;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return position < offset + limit;
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package plc.project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A source file mapped into memory, which can be lexed directly by a {@link
+ * TableLexer} without copying it onto the heap. Each byte is one character, so
+ * token indices are byte offsets into the file.
+ *
+ * ASCII sources lex exactly as they would from a {@link String}. Other bytes
+ * of a UTF-8 source are read as {@code '\uFFFD'}, which is only meaningful
+ * inside string literals; slices are decoded as UTF-8 when converted to a
+ * {@link String}, so the literals of those tokens are still correct.
+ */
+public final class MappedSource implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int start;
+    private final int end;
+
+    public MappedSource(ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private MappedSource(ByteBuffer bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Maps the file at the given path, which must be smaller than 2GB.
+     */
+    public static MappedSource map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is too large to map.");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        byte b = bytes.get(start + index);
+        return b >= 0 ? (char) b : '\uFFFD';
+    }
+
+    /**
+     * Returns a view of the given range, which does not copy any bytes until
+     * it is converted to a {@link String}.
+     */
+    @Override
+    public MappedSource subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException("Invalid range " + start + " to " + end + ".");
+        }
+        return new MappedSource(bytes, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        byte[] array = new byte[length()];
+        bytes.get(start, array);
+        return new String(array, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,468 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Folds constant expressions and removes statically dead branches from a
+ * source, which should already be analyzed. Each visit returns the optimized
+ * AST, which is the same node if nothing in it changed, so the variables,
+ * functions and types attached by the {@link Analyzer} are kept and copied to
+ * any node which is rebuilt.
+ *
+ * Binary expressions whose operands are literals are folded with the same
+ * BigInteger and BigDecimal arithmetic as the {@link Interpreter}, except for
+ * integers outside the range of a Java {@code int}, division by zero and
+ * equality, which are left to the backends. Groups of literals become
+ * literals.
+ *
+ * An if statement with a literal condition is replaced by the branch taken,
+ * a while loop with a false condition is removed, and a switch on a literal
+ * whose cases are literals is replaced by the case matching it. A branch
+ * which declares no variables and contains no return statement is spliced
+ * into the enclosing statements, and any other is kept in its own scope as
+ * {@code IF TRUE DO ... END}. A branch which returns is not spliced since the
+ * statements after it would then be unreachable, which javac rejects.
+ */
+public final class Optimizer implements Ast.Visitor<Ast> {
+
+    private static final BigInteger MIN_INTEGER = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger MAX_INTEGER = BigInteger.valueOf(Integer.MAX_VALUE);
+
+    /**
+     * Returns the optimized source.
+     */
+    public static Ast.Source optimize(Ast.Source ast) {
+        return (Ast.Source) new Optimizer().visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        List<Ast.Global> globals = nodes(ast.getGlobals(), Ast.Global.class);
+        List<Ast.Function> functions = nodes(ast.getFunctions(), Ast.Function.class);
+        if (globals == ast.getGlobals() && functions == ast.getFunctions()) {
+            return ast;
+        }
+        return new Ast.Source(globals, functions);
+    }
+
+    @Override
+    public Ast visit(Ast.Global ast) {
+        Optional<Ast.Expression> value = optional(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Global global = new Ast.Global(ast.getName(), ast.getTypeName(), ast.getMutable(), value);
+        global.setVariable(attached(ast::getVariable));
+        return global;
+    }
+
+    @Override
+    public Ast visit(Ast.Function ast) {
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        Ast.Function function = new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+        function.setFunction(attached(ast::getFunction));
+        return function;
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Expression ast) {
+        Ast.Expression expression = (Ast.Expression) visit(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Statement.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Declaration ast) {
+        Optional<Ast.Expression> value = optional(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Statement.Declaration declaration = new Ast.Statement.Declaration(ast.getName(), ast.getTypeName(), value);
+        declaration.setVariable(attached(ast::getVariable));
+        return declaration;
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Assignment ast) {
+        Ast.Expression receiver = (Ast.Expression) visit(ast.getReceiver());
+        Ast.Expression value = (Ast.Expression) visit(ast.getValue());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.If ast) {
+        Ast.Expression condition = (Ast.Expression) visit(ast.getCondition());
+        if (isLiteral(condition, Boolean.class)) {
+            boolean value = (Boolean) ((Ast.Expression.Literal) condition).getLiteral();
+            return block(statements(value ? ast.getThenStatements() : ast.getElseStatements()));
+        }
+        List<Ast.Statement> thenStatements = statements(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = statements(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Switch ast) {
+        Ast.Expression condition = (Ast.Expression) visit(ast.getCondition());
+        List<Ast.Statement.Case> cases = nodes(ast.getCases(), Ast.Statement.Case.class);
+        if (condition instanceof Ast.Expression.Literal) {
+            Object literal = ((Ast.Expression.Literal) condition).getLiteral();
+            List<Ast.Statement> statements = new ArrayList<>();
+            boolean constant = true;
+            for (Ast.Statement.Case caseStmt : cases) {
+                if (!caseStmt.getValue().isPresent()) {
+                    statements = caseStmt.getStatements();
+                    break;
+                } else if (!(caseStmt.getValue().get() instanceof Ast.Expression.Literal)) {
+                    constant = false;
+                    break;
+                } else if (Objects.equals(literal, ((Ast.Expression.Literal) caseStmt.getValue().get()).getLiteral())) {
+                    statements = caseStmt.getStatements();
+                    break;
+                }
+            }
+            if (constant) {
+                return block(statements);
+            }
+        }
+        if (condition == ast.getCondition() && cases == ast.getCases()) {
+            return ast;
+        }
+        return new Ast.Statement.Switch(condition, cases);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Case ast) {
+        Optional<Ast.Expression> value = optional(ast.getValue());
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.While ast) {
+        Ast.Expression condition = (Ast.Expression) visit(ast.getCondition());
+        if (isLiteral(condition, Boolean.class) && !(Boolean) ((Ast.Expression.Literal) condition).getLiteral()) {
+            return block(new ArrayList<>());
+        }
+        List<Ast.Statement> statements = statements(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Statement.Return ast) {
+        Ast.Expression value = (Ast.Expression) visit(ast.getValue());
+        return value == ast.getValue() ? ast : new Ast.Statement.Return(value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = (Ast.Expression) visit(ast.getExpression());
+        if (expression instanceof Ast.Expression.Literal) {
+            return literal(((Ast.Expression.Literal) expression).getLiteral(), ast);
+        } else if (expression == ast.getExpression()) {
+            return ast;
+        }
+        Ast.Expression.Group group = new Ast.Expression.Group(expression);
+        group.setType(attached(ast::getType));
+        return group;
+    }
+
+    /**
+     * Folds the binary expression if its optimized operands are literals.
+     * Equality is left alone along with its operands, since the interpreter
+     * compares the operands as written rather than their values, which folding
+     * them would change.
+     */
+    @Override
+    public Ast visit(Ast.Expression.Binary ast) {
+        if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+            return ast;
+        }
+        Ast.Expression left = (Ast.Expression) visit(ast.getLeft());
+        Ast.Expression right = (Ast.Expression) visit(ast.getRight());
+        Object value = fold(ast.getOperator(), left, right);
+        if (value != null) {
+            return literal(value, ast);
+        } else if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        Ast.Expression.Binary binary = new Ast.Expression.Binary(ast.getOperator(), left, right);
+        binary.setType(attached(ast::getType));
+        return binary;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Access ast) {
+        Optional<Ast.Expression> offset = optional(ast.getOffset());
+        if (offset == ast.getOffset()) {
+            return ast;
+        }
+        Ast.Expression.Access access = new Ast.Expression.Access(offset, ast.getName());
+        access.setVariable(attached(ast::getVariable));
+        return access;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.Function ast) {
+        List<Ast.Expression> arguments = nodes(ast.getArguments(), Ast.Expression.class);
+        if (arguments == ast.getArguments()) {
+            return ast;
+        }
+        Ast.Expression.Function function = new Ast.Expression.Function(ast.getName(), arguments);
+        function.setFunction(attached(ast::getFunction));
+        return function;
+    }
+
+    @Override
+    public Ast visit(Ast.Expression.PlcList ast) {
+        List<Ast.Expression> values = nodes(ast.getValues(), Ast.Expression.class);
+        if (values == ast.getValues()) {
+            return ast;
+        }
+        Ast.Expression.PlcList list = new Ast.Expression.PlcList(values);
+        list.setType(attached(ast::getType));
+        return list;
+    }
+
+    /**
+     * Returns the value of a binary expression whose operands are literals,
+     * or null if it cannot be folded. A false left operand of {@code &&} and
+     * a true left operand of {@code ||} fold regardless of the right operand,
+     * which the interpreter would not evaluate.
+     */
+    private static Object fold(String operator, Ast.Expression left, Ast.Expression right) {
+        if (operator.equals("&&") && isLiteral(left, Boolean.class) && !(Boolean) ((Ast.Expression.Literal) left).getLiteral()) {
+            return false;
+        } else if (operator.equals("||") && isLiteral(left, Boolean.class) && (Boolean) ((Ast.Expression.Literal) left).getLiteral()) {
+            return true;
+        } else if (!(left instanceof Ast.Expression.Literal) || !(right instanceof Ast.Expression.Literal)) {
+            return null;
+        }
+        Object lhs = ((Ast.Expression.Literal) left).getLiteral();
+        Object rhs = ((Ast.Expression.Literal) right).getLiteral();
+        switch (operator) {
+            case "&&":
+            case "||":
+                return lhs instanceof Boolean && rhs instanceof Boolean ? rhs : null;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=": {
+                Integer comparison = compare(lhs, rhs);
+                if (comparison == null) {
+                    return null;
+                }
+                switch (operator) {
+                    case "<":
+                        return comparison < 0;
+                    case "<=":
+                        return comparison <= 0;
+                    case ">":
+                        return comparison > 0;
+                    default:
+                        return comparison >= 0;
+                }
+            }
+            case "+":
+                if (lhs instanceof String && (rhs instanceof String || rhs instanceof BigInteger || rhs instanceof Character || rhs instanceof Boolean)) {
+                    return "" + lhs + rhs;
+                } else if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+                    return integer(((BigInteger) lhs).add((BigInteger) rhs));
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                    return ((BigDecimal) lhs).add((BigDecimal) rhs);
+                }
+                return null;
+            case "-":
+                if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+                    return integer(((BigInteger) lhs).subtract((BigInteger) rhs));
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                    return ((BigDecimal) lhs).subtract((BigDecimal) rhs);
+                }
+                return null;
+            case "*":
+                if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+                    return integer(((BigInteger) lhs).multiply((BigInteger) rhs));
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+                    return ((BigDecimal) lhs).multiply((BigDecimal) rhs);
+                }
+                return null;
+            case "/":
+                if (lhs instanceof BigInteger && rhs instanceof BigInteger && ((BigInteger) rhs).signum() != 0) {
+                    return integer(((BigInteger) lhs).divide((BigInteger) rhs));
+                } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal && ((BigDecimal) rhs).signum() != 0) {
+                    return ((BigDecimal) lhs).divide((BigDecimal) rhs, RoundingMode.HALF_EVEN);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Compares two literals of the same comparable type, or returns null if
+     * they are not, since the interpreter would fail to compare them.
+     */
+    private static Integer compare(Object lhs, Object rhs) {
+        if (lhs instanceof BigInteger && rhs instanceof BigInteger) {
+            return ((BigInteger) lhs).compareTo((BigInteger) rhs);
+        } else if (lhs instanceof BigDecimal && rhs instanceof BigDecimal) {
+            return ((BigDecimal) lhs).compareTo((BigDecimal) rhs);
+        } else if (lhs instanceof Character && rhs instanceof Character) {
+            return ((Character) lhs).compareTo((Character) rhs);
+        } else if (lhs instanceof String && rhs instanceof String) {
+            return ((String) lhs).compareTo((String) rhs);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the integer if it is in the range of a Java {@code int}, and
+     * otherwise null so it is not folded.
+     */
+    private static BigInteger integer(BigInteger value) {
+        return value.compareTo(MIN_INTEGER) >= 0 && value.compareTo(MAX_INTEGER) <= 0 ? value : null;
+    }
+
+    private static boolean isLiteral(Ast.Expression ast, Class<?> type) {
+        return ast instanceof Ast.Expression.Literal && type.isInstance(((Ast.Expression.Literal) ast).getLiteral());
+    }
+
+    /**
+     * Returns a literal replacing the expression, with its type.
+     */
+    private static Ast.Expression.Literal literal(Object value, Ast.Expression ast) {
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(value);
+        literal.setType(attached(ast::getType));
+        return literal;
+    }
+
+    /**
+     * Returns the statements of a pruned branch as {@code IF TRUE DO ... END},
+     * which {@link #statements} splices if it declares no variables.
+     */
+    private static Ast.Statement.If block(List<Ast.Statement> statements) {
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(true);
+        literal.setType(Environment.Type.BOOLEAN);
+        return new Ast.Statement.If(literal, statements, new ArrayList<>());
+    }
+
+    /**
+     * Optimizes the statements of a block, splicing in the statements of
+     * branches which were taken statically, declare no variables and do not
+     * return. Returns the same list if no statement changed.
+     */
+    private List<Ast.Statement> statements(List<Ast.Statement> statements) {
+        List<Ast.Statement> optimized = new ArrayList<>(statements.size());
+        boolean changed = false;
+        for (Ast.Statement statement : statements) {
+            Ast.Statement result = (Ast.Statement) visit(statement);
+            changed |= result != statement;
+            if (isBlock(result) && ((Ast.Statement.If) result).getThenStatements().stream()
+                    .noneMatch(Ast.Statement.Declaration.class::isInstance)
+                    && !returns(((Ast.Statement.If) result).getThenStatements())) {
+                optimized.addAll(((Ast.Statement.If) result).getThenStatements());
+                changed = true;
+            } else {
+                optimized.add(result);
+            }
+        }
+        return changed ? optimized : statements;
+    }
+
+    private static boolean isBlock(Ast.Statement ast) {
+        return ast instanceof Ast.Statement.If
+                && isLiteral(((Ast.Statement.If) ast).getCondition(), Boolean.class)
+                && (Boolean) ((Ast.Expression.Literal) ((Ast.Statement.If) ast).getCondition()).getLiteral()
+                && ((Ast.Statement.If) ast).getElseStatements().isEmpty();
+    }
+
+    /**
+     * Returns true if any of the statements, or any statement nested in them,
+     * is a return statement.
+     */
+    private static boolean returns(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Return) {
+                return true;
+            } else if (statement instanceof Ast.Statement.If) {
+                Ast.Statement.If ast = (Ast.Statement.If) statement;
+                if (returns(ast.getThenStatements()) || returns(ast.getElseStatements())) {
+                    return true;
+                }
+            } else if (statement instanceof Ast.Statement.Switch) {
+                for (Ast.Statement.Case caseStmt : ((Ast.Statement.Switch) statement).getCases()) {
+                    if (returns(caseStmt.getStatements())) {
+                        return true;
+                    }
+                }
+            } else if (statement instanceof Ast.Statement.While) {
+                if (returns(((Ast.Statement.While) statement).getStatements())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Optional<Ast.Expression> optional(Optional<Ast.Expression> ast) {
+        if (!ast.isPresent()) {
+            return ast;
+        }
+        Ast.Expression optimized = (Ast.Expression) visit(ast.get());
+        return optimized == ast.get() ? ast : Optional.of(optimized);
+    }
+
+    /**
+     * Returns the optimized nodes, which must still be of the given class, or
+     * the same list if no node changed.
+     */
+    private <T extends Ast> List<T> nodes(List<T> asts, Class<T> type) {
+        List<T> optimized = new ArrayList<>(asts.size());
+        boolean changed = false;
+        for (T ast : asts) {
+            T result = type.cast(visit(ast));
+            changed |= result != ast;
+            optimized.add(result);
+        }
+        return changed ? optimized : asts;
+    }
+
+    /**
+     * Returns what the {@link Analyzer} attached to a node, such as its type,
+     * variable or function, or null if it has not been analyzed.
+     */
+    private static <T> T attached(Supplier<T> getter) {
+        try {
+            return getter.get();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+}
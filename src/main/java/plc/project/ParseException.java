@@ -9,6 +9,19 @@ public final class ParseException extends RuntimeException {
         this.index = index;
     }
 
+    private ParseException(String message, int index, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.index = index;
+    }
+
+    /**
+     * Creates an exception without a stack trace, which is much cheaper to
+     * construct when it is only used to report a diagnostic.
+     */
+    public static ParseException stackless(String message, int index) {
+        return new ParseException(message, index, false);
+    }
+
     public int getIndex() {
         return index;
     }
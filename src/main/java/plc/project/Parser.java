@@ -4,8 +4,11 @@ import javax.swing.text.html.Option;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The parser takes the sequence of tokens emitted by the lexer and turns that
@@ -22,10 +25,68 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    /**
+     * Binding power of each binary operator, indexed by {@link Token.Kind},
+     * where {@code 0} is not a binary operator. Division is not part of the
+     * grammar as implemented, so {@code /} has none.
+     */
+    private static final int[] PRECEDENCE = new int[Token.Kind.values().length];
+
+    private static final int LOGICAL = 1;
+    private static final int COMPARISON = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    static {
+        PRECEDENCE[Token.Kind.AND.ordinal()] = LOGICAL;
+        PRECEDENCE[Token.Kind.OR.ordinal()] = LOGICAL;
+        PRECEDENCE[Token.Kind.LESS.ordinal()] = COMPARISON;
+        PRECEDENCE[Token.Kind.GREATER.ordinal()] = COMPARISON;
+        PRECEDENCE[Token.Kind.EQUAL.ordinal()] = COMPARISON;
+        PRECEDENCE[Token.Kind.NOT_EQUAL.ordinal()] = COMPARISON;
+        PRECEDENCE[Token.Kind.PLUS.ordinal()] = ADDITIVE;
+        PRECEDENCE[Token.Kind.TIMES.ordinal()] = MULTIPLICATIVE;
+        PRECEDENCE[Token.Kind.MINUS.ordinal()] = MULTIPLICATIVE;
+    }
+
     private final TokenStream tokens;
 
+    /**
+     * The diagnostics of {@link #parseSource(List)}, or null if errors are
+     * thrown instead.
+     */
+    private List<ParseException> diagnostics = null;
+
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this(TokenBuffer.of(tokens));
+    }
+
+    /**
+     * Creates a parser over a packed {@link TokenBuffer}, such as from {@link
+     * TableLexer#lexBuffer()}, which is read without creating {@link Token}s.
+     */
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new TokenStream(tokens, null);
+    }
+
+    /**
+     * Creates a parser over the tokens of the buffer from start to end, which
+     * is used to parse a single function of {@link #parseSource(ForkJoinPool)}
+     * or a single item of an {@link IncrementalParser}.
+     */
+    Parser(TokenBuffer tokens, int start, int end) {
+        this.tokens = new TokenStream(tokens, null);
+        this.tokens.index = start;
+        this.tokens.limit = end;
+    }
+
+    /**
+     * Creates a parser pulling tokens from the iterator as they are needed,
+     * such as a {@link TableLexer}. Only the current token and the one before
+     * it are kept, so memory use does not grow with the length of the input.
+     */
+    public Parser(Iterator<Token> tokens) {
+        this.tokens = new TokenStream(new TokenBuffer(null), tokens);
     }
 
     /**
@@ -34,22 +95,159 @@ public final class Parser {
     public Ast.Source parseSource() throws ParseException {
             List<Ast.Global> global = new ArrayList<>();
             List<Ast.Function> func = new ArrayList<>();
-            boolean passed = false;
             while(tokens.has(0))
             {
-                if(peek("LIST") || peek("VAR") || peek("VAL"))
-                {
-                    if(passed)
-                        throw new ParseException("Globals after functions", tokens.get(0).getIndex());
-                    global.add(parseGlobal());
+                parseRecovering(true, () -> {
+                    switch(tokens.getKind(0))
+                    {
+                        case LIST:
+                        case VAR:
+                        case VAL:
+                            if(!func.isEmpty())
+                                throw error("Globals after functions", tokens.getIndex(0));
+                            global.add(parseGlobal());
+                            break;
+                        case FUN:
+                            func.add(parseFunction());
+                            break;
+                        default:
+                            throw error("Expected LIST, VAR, VAL or FUN", tokens.getIndex(0));
+                    }
+                });
+            }
+        return new Ast.Source(global,func);
+    }
+
+    /**
+     * Parses the {@code source} rule in recovery mode. Instead of throwing at
+     * the first error, each {@link ParseException} is added to diagnostics and
+     * parsing resumes after the next {@code ;}, or at the next {@code END} or
+     * {@code FUN}, so a single pass reports every error in the source.
+     *
+     * The returned source contains everything that parsed successfully. The
+     * diagnostics are created with {@link ParseException#stackless(String,
+     * int)}, since their stack traces are never used.
+     */
+    public Ast.Source parseSource(List<ParseException> diagnostics) {
+        this.diagnostics = diagnostics;
+        try {
+            return parseSource();
+        } finally {
+            this.diagnostics = null;
+        }
+    }
+
+    /**
+     * Parses the {@code source} rule, parsing the functions in parallel on the
+     * given pool. A single pass over the tokens first finds the boundaries of
+     * each function by matching {@code FUN}, {@code IF}, {@code WHILE} and
+     * {@code SWITCH} with their {@code END}. Each function is then parsed by a
+     * separate parser limited to its tokens, while the globals before them
+     * are parsed by this thread.
+     *
+     * The result is identical to {@link #parseSource()}. Whenever the
+     * boundaries do not line up, such as a token between two functions, or
+     * any part fails to parse, the source is parsed serially instead, which
+     * also throws the same exception. Streaming parsers are always parsed
+     * serially, since their tokens are not buffered.
+     */
+    public Ast.Source parseSource(ForkJoinPool pool) throws ParseException {
+        int[] bounds = findFunctions();
+        if (bounds == null) {
+            return parseSource();
+        }
+        List<ForkJoinTask<Ast.Function>> tasks = new ArrayList<>();
+        for (int i = 1; i < bounds.length - 1; i++) {
+            Parser parser = new Parser(tokens.tokens, bounds[i], bounds[i + 1]);
+            tasks.add(pool.submit(parser::parseBoundedFunction));
+        }
+        List<Ast.Function> functions = new ArrayList<>();
+        try {
+            Parser parser = new Parser(tokens.tokens, bounds[0], bounds[1]);
+            List<Ast.Global> globals = parser.parseSource().getGlobals();
+            for (ForkJoinTask<Ast.Function> task : tasks) {
+                Ast.Function function = task.join();
+                if (function == null) {
+                    break;
                 }
-                else if(peek("FUN"))
-                {
-                    func.add(parseFunction());
-                    passed = true;
+                functions.add(function);
+            }
+            if (functions.size() == tasks.size()) {
+                while (tokens.has(0)) {
+                    tokens.advance();
                 }
+                return new Ast.Source(globals, functions);
             }
-        return new Ast.Source(global,func);
+        } catch (ParseException | IndexOutOfBoundsException e) {
+            //the serial parser determines the exception thrown, if any
+        }
+        for (ForkJoinTask<Ast.Function> task : tasks) {
+            task.cancel(false);
+        }
+        return parseSource();
+    }
+
+    /**
+     * Finds the token indices at which each top-level function starts, which
+     * are preceded by the current index and followed by the end of the tokens.
+     * Returns null if there are no functions or the tokens cannot be split
+     * into globals followed by functions.
+     */
+    private int[] findFunctions() {
+        if (tokens.source != null) {
+            return null;
+        }
+        TokenBuffer buffer = tokens.tokens;
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(tokens.index);
+        int depth = 0;
+        for (int i = tokens.index; i < buffer.size(); i++) {
+            Token.Kind kind = buffer.getKind(i);
+            if (depth == 0 && kind == Token.Kind.FUN) {
+                bounds.add(i);
+            } else if (depth == 0 && bounds.size() > 1) {
+                return null;
+            }
+            switch (kind) {
+                case FUN:
+                case IF:
+                case WHILE:
+                case SWITCH:
+                    if (bounds.size() == 1) {
+                        return null;
+                    }
+                    depth++;
+                    break;
+                case END:
+                    if (--depth < 0) {
+                        return null;
+                    }
+                    break;
+            }
+        }
+        if (depth != 0 || bounds.size() == 1) {
+            return null;
+        }
+        bounds.add(buffer.size());
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Parses a function which must span all of the tokens of this parser,
+     * returning null if it ends early.
+     */
+    Ast.Function parseBoundedFunction() throws ParseException {
+        Ast.Function function = parseFunction();
+        return tokens.has(0) ? null : function;
+    }
+
+    /**
+     * Parses a global which must span all of the tokens of this parser,
+     * returning null if it ends early.
+     */
+    Ast.Global parseBoundedGlobal() throws ParseException {
+        Ast.Global global = parseGlobal();
+        return tokens.has(0) ? null : global;
     }
 
     /**
@@ -60,14 +258,14 @@ public final class Parser {
 
         Ast.Global val = null;
 
-        if(peek("LIST"))
+        if(peek(Token.Kind.LIST))
             val = parseList();
-        else if(peek("VAR"))
+        else if(peek(Token.Kind.VAR))
             val = parseMutable();
-        else if(peek("VAL"))
+        else if(peek(Token.Kind.VAL))
             val = parseImmutable();
-        if(!match(";"))
-            throw new ParseException("Missing semicolon",0);
+        if(!match(Token.Kind.SEMICOLON))
+            throw error("Missing semicolon",0);
 
         return val;
     }
@@ -80,40 +278,40 @@ public final class Parser {
         String name = "";
         String typename="";
         List<Ast.Expression> list = new ArrayList<>();
-        match("LIST");
+        match(Token.Kind.LIST);
         if(match(Token.Type.IDENTIFIER)) {
-            name = tokens.get(-1).getLiteral();
-            if(match(":")) {
+            name = tokens.getLiteral(-1);
+            if(match(Token.Kind.COLON)) {
                 if(match(Token.Type.IDENTIFIER)) {
-                    typename = tokens.get(-1).getLiteral();
-                    if (match("=")) {
-                        if (match("[")) {
+                    typename = tokens.getLiteral(-1);
+                    if (match(Token.Kind.ASSIGN)) {
+                        if (match(Token.Kind.LEFT_BRACKET)) {
                             list.add(parseExpression());
-                            while (match(","))
+                            while (match(Token.Kind.COMMA))
                                 list.add(parseExpression());
-                            if (match("]"))
+                            if (match(Token.Kind.RIGHT_BRACKET))
                                 return new Ast.Global(name,typename, true, Optional.of(new Ast.Expression.PlcList(list)));
                         } else {
-                            throw new ParseException("No array bracket", tokens.get(0).getIndex());
+                            throw error("No array bracket", tokens.getIndex(0));
                         }
                     }
                     else {
-                        throw new ParseException("No equal sign", tokens.get(0).getIndex());
+                        throw error("No equal sign", tokens.getIndex(0));
                     }
                 }
                 else {
-                    throw new ParseException("No token identifier", tokens.get(0).getIndex());
+                    throw error("No token identifier", tokens.getIndex(0));
                 }
             }
             else {
-                throw new ParseException("No semicolon sign", tokens.get(0).getIndex());
+                throw error("No semicolon sign", tokens.getIndex(0));
             }
         }
         else {
-            throw new ParseException("No identifier found", tokens.get(0).getIndex());
+            throw error("No identifier found", tokens.getIndex(0));
         }
 
-        throw new ParseException("No array bracket", tokens.get(0).getIndex());
+        throw error("No array bracket", tokens.getIndex(0));
     }
 
     /**
@@ -124,27 +322,27 @@ public final class Parser {
         String name = "";
         String typeName="";
         Optional<Ast.Expression> value = Optional.empty();
-        match("VAR");
+        match(Token.Kind.VAR);
         if(match(Token.Type.IDENTIFIER)) {
-            name = tokens.get(-1).getLiteral();
-            if(match(":")) {
+            name = tokens.getLiteral(-1);
+            if(match(Token.Kind.COLON)) {
                 if(match(Token.Type.IDENTIFIER)) {
-                    typeName=tokens.get(-1).getLiteral();
-                    if (match("=")) {
-                        if (!peek(";"))
+                    typeName=tokens.getLiteral(-1);
+                    if (match(Token.Kind.ASSIGN)) {
+                        if (!peek(Token.Kind.SEMICOLON))
                             value = Optional.of(parseExpression());
                     }
                 }
                 else {
-                    throw new ParseException("No identifier found", tokens.get(0).getIndex());
+                    throw error("No identifier found", tokens.getIndex(0));
                 }
             }
             else {
-                throw new ParseException("No semicolon found", tokens.get(0).getIndex());
+                throw error("No semicolon found", tokens.getIndex(0));
             }
         }
         else {
-            throw new ParseException("No identifier found", tokens.get(0).getIndex());
+            throw error("No identifier found", tokens.getIndex(0));
         }
         return new Ast.Global(name,typeName,true,value);
     }
@@ -157,30 +355,30 @@ public final class Parser {
         String name = "";
         String typeName="";
         Optional<Ast.Expression> value = Optional.empty();
-        match("VAL");
+        match(Token.Kind.VAL);
         if(match(Token.Type.IDENTIFIER)) {
-            name = tokens.get(-1).getLiteral();
-            if(match(":")) {
+            name = tokens.getLiteral(-1);
+            if(match(Token.Kind.COLON)) {
                 if (match(Token.Type.IDENTIFIER)) {
-                    typeName=tokens.get(-1).getLiteral();
-                    if (match("=")) {
-                        if (!peek(";"))
+                    typeName=tokens.getLiteral(-1);
+                    if (match(Token.Kind.ASSIGN)) {
+                        if (!peek(Token.Kind.SEMICOLON))
                             value = Optional.of(parseExpression());
                         else
-                            throw new ParseException("No value after equal", tokens.get(0).getIndex());
+                            throw error("No value after equal", tokens.getIndex(0));
                     } else
-                        throw new ParseException("Invalid token after identifier", tokens.get(0).getIndex());
+                        throw error("Invalid token after identifier", tokens.getIndex(0));
                 }
                 else {
-                    throw new ParseException("Invalid token after identifier", tokens.get(0).getIndex());
+                    throw error("Invalid token after identifier", tokens.getIndex(0));
                 }
             }
             else {
-                    throw new ParseException("Invalid token after identifier", tokens.get(0).getIndex());
+                    throw error("Invalid token after identifier", tokens.getIndex(0));
             }
             }
             else {
-                throw new ParseException("Invalid token after identifier", tokens.get(0).getIndex());
+                throw error("Invalid token after identifier", tokens.getIndex(0));
             }
         return new Ast.Global(name,typeName,false,value);
     }
@@ -190,73 +388,73 @@ public final class Parser {
      * next tokens start a method, aka {@code FUN}.
      */
     public Ast.Function parseFunction() throws ParseException {
-       match("FUN");
+       match(Token.Kind.FUN);
        Optional<String> returnType=Optional.empty();
        String name = "";
        List<String> parameters = new ArrayList<>();
        List<Ast.Statement> statements = new ArrayList<>();
        List<String> parameterTypeNames=new ArrayList<>();
        if(peek(Token.Type.IDENTIFIER)) {
-           name = tokens.get(0).getLiteral();
+           name = tokens.getLiteral(0);
            match(Token.Type.IDENTIFIER);
        }
        else
-           throw new ParseException("No function name found", tokens.get(0).getIndex());
-       if(!match("("))
-           throw new ParseException("No opening parenthesis", tokens.get(0).getIndex());
+           throw error("No function name found", tokens.getIndex(0));
+       if(!match(Token.Kind.LEFT_PAREN))
+           throw error("No opening parenthesis", tokens.getIndex(0));
        if(peek(Token.Type.IDENTIFIER)) {
-           parameters.add(tokens.get(0).getLiteral());
+           parameters.add(tokens.getLiteral(0));
            match(Token.Type.IDENTIFIER);
-           if(match(":")) {
+           if(match(Token.Kind.COLON)) {
                if(peek(Token.Type.IDENTIFIER)) {
-                   parameterTypeNames.add(tokens.get(0).getLiteral());
+                   parameterTypeNames.add(tokens.getLiteral(0));
                    match((Token.Type.IDENTIFIER));
-                   while (match(",")) {
+                   while (match(Token.Kind.COMMA)) {
                        if (match(Token.Type.IDENTIFIER)) {
-                           parameters.add(tokens.get(0).getLiteral());
+                           parameters.add(tokens.getLiteral(0));
                        } else {
-                           throw new ParseException("not identifier or dangling comma", tokens.get(0).getIndex());
+                           throw error("not identifier or dangling comma", tokens.getIndex(0));
                        }
-                       if(match(":")) {
-                           parameterTypeNames.add(tokens.get(0).getLiteral());
+                       if(match(Token.Kind.COLON)) {
+                           parameterTypeNames.add(tokens.getLiteral(0));
                        }
                        else {
-                           throw new ParseException("not identifier or dangling comma", tokens.get(0).getIndex());
+                           throw error("not identifier or dangling comma", tokens.getIndex(0));
                        }
                    }
                }
                else {
-                   throw new ParseException("not identifier or dangling comma/colon", tokens.get(0).getIndex());
+                   throw error("not identifier or dangling comma/colon", tokens.getIndex(0));
                }
            }
            else {
-               throw new ParseException("not identifier or dangling comma/colon", tokens.get(0).getIndex());
+               throw error("not identifier or dangling comma/colon", tokens.getIndex(0));
            }
        }
         if(match(Token.Type.IDENTIFIER))
-            throw new ParseException("identifier without a comma before it", tokens.get(0).getIndex());
+            throw error("identifier without a comma before it", tokens.getIndex(0));
 
-        if(!match(")"))
-            throw new ParseException("no closing parenthesis", tokens.get(0).getIndex());
-        if(peek(":")) {
-           match(":");
+        if(!match(Token.Kind.RIGHT_PAREN))
+            throw error("no closing parenthesis", tokens.getIndex(0));
+        if(peek(Token.Kind.COLON)) {
+           match(Token.Kind.COLON);
            if(peek(Token.Type.IDENTIFIER)) {
-               returnType= Optional.of(tokens.get(0).getLiteral());
+               returnType= Optional.of(tokens.getLiteral(0));
                match(Token.Type.IDENTIFIER);
            }
            else {
-               throw new ParseException("no identifier", tokens.get(0).getIndex());
+               throw error("no identifier", tokens.getIndex(0));
            }
 
         }
-        if(!match("DO"))
-            throw new ParseException("no DO ", tokens.get(0).getIndex());
+        if(!match(Token.Kind.DO))
+            throw error("no DO ", tokens.getIndex(0));
 
-        while(tokens.has(0) && !peek("END"))
-            statements.add(parseStatement());
+        while(tokens.has(0) && !peek(Token.Kind.END) && !(diagnostics != null && peek(Token.Kind.FUN)))
+            parseRecovering(false, () -> statements.add(parseStatement()));
 
-        if(!match("END"))
-            throw new ParseException("no DO ", tokens.get(0).getIndex());
+        if(!match(Token.Kind.END))
+            throw error("no DO ", tokens.getIndex(0));
         return new Ast.Function(name, parameters,parameterTypeNames,returnType, statements);
     }
 
@@ -267,9 +465,9 @@ public final class Parser {
      */
     public List<Ast.Statement> parseBlock() throws ParseException {
         List<Ast.Statement> parseStatements=new ArrayList<Ast.Statement>();
-        while((!match("END") ||!match("ELSE")|| !match("DEFAULT"))) {
+        while((!match(Token.Kind.END) ||!match(Token.Kind.ELSE)|| !match(Token.Kind.DEFAULT))) {
             parseStatements.add(parseStatement());
-            if(peek("END") || peek("ELSE")|| peek("DEFAULT")) {
+            if(peek(Token.Kind.END) || peek(Token.Kind.ELSE)|| peek(Token.Kind.DEFAULT) || peek(Token.Kind.CASE)) {
                 return parseStatements;
             }
         }
@@ -282,42 +480,42 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Statement parseStatement() throws ParseException {
-        if(match("LET")) {
-            return parseDeclarationStatement();
-        }
-        else if(match("SWITCH")) {
-            return parseSwitchStatement();
-        }
-        else if(match("IF")) {
-            return parseIfStatement();
-        }
-        else if(match("WHILE")) {
-            return parseWhileStatement();
-        }
-        else if(match("RETURN")) {
-            return parseReturnStatement();
+        switch(peekKind()) {
+            case LET:
+                tokens.advance();
+                return parseDeclarationStatement();
+            case SWITCH:
+                tokens.advance();
+                return parseSwitchStatement();
+            case IF:
+                tokens.advance();
+                return parseIfStatement();
+            case WHILE:
+                tokens.advance();
+                return parseWhileStatement();
+            case RETURN:
+                tokens.advance();
+                return parseReturnStatement();
         }
-        else {
-            //down below is the rule expression ( '=' expression )?;
-            // checks if there is an expression on the left hand side
-            Ast.Expression lhs = parseExpression();
-            // peeks & advances if there is an equal sign then checks if there is no semicolon
-            if (!match("=")) {
-                if (!match(";")) {
-                    throw new ParseException("no kjsemicolon after expression", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
-                }
-                //returns just the lhs
-                return new Ast.Statement.Expression(lhs);
-            } else {
-                // sets expression to write expression if equal sign exists
-                Ast.Expression rhs = parseExpression();
-                if (!match(";")) {
-                    throw new ParseException("no semicolon after expression", (tokens.get(-1).getIndex()) + tokens.get(-1).getLiteral().length());
-                }
-                // returns Assignment expression
-                else {
-                    return new Ast.Statement.Assignment(lhs, rhs);
-                }
+        //down below is the rule expression ( '=' expression )?;
+        // checks if there is an expression on the left hand side
+        Ast.Expression lhs = parseExpression();
+        // peeks & advances if there is an equal sign then checks if there is no semicolon
+        if (!match(Token.Kind.ASSIGN)) {
+            if (!match(Token.Kind.SEMICOLON)) {
+                throw error("no kjsemicolon after expression", (tokens.getIndex(-1) + tokens.getLength(-1)));
+            }
+            //returns just the lhs
+            return new Ast.Statement.Expression(lhs);
+        } else {
+            // sets expression to write expression if equal sign exists
+            Ast.Expression rhs = parseExpression();
+            if (!match(Token.Kind.SEMICOLON)) {
+                throw error("no semicolon after expression", (tokens.getIndex(-1)) + tokens.getLength(-1));
+            }
+            // returns Assignment expression
+            else {
+                return new Ast.Statement.Assignment(lhs, rhs);
             }
         }
     }
@@ -330,33 +528,33 @@ public final class Parser {
     public Ast.Statement.Declaration parseDeclarationStatement() throws ParseException {
         if(peek(Token.Type.IDENTIFIER)) {
             match(Token.Type.IDENTIFIER);
-            String name_identifier = tokens.get(-1).getLiteral();
-            if(peek(";")) {
-                match(";");
+            String name_identifier = tokens.getLiteral(-1);
+            if(peek(Token.Kind.SEMICOLON)) {
+                match(Token.Kind.SEMICOLON);
                 return new Ast.Statement.Declaration(name_identifier, Optional.empty());
             }
             else {
-                if (peek("=")) {
-                    match("=");
+                if (peek(Token.Kind.ASSIGN)) {
+                    match(Token.Kind.ASSIGN);
                     try {
                         Ast.Expression parse_expr = parseExpression();
-                        if (peek(";")) {
-                            match(";");
+                        if (peek(Token.Kind.SEMICOLON)) {
+                            match(Token.Kind.SEMICOLON);
                             return new Ast.Statement.Declaration(name_identifier, Optional.of(parse_expr));
                         } else {
                             if(tokens.has(0)) {
-                                throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                                throw error("no expression ahead", (tokens.getIndex(0)));
                             }
                             else {
-                                throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                                throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
                             }
                         }
                     } catch (ParseException p) {
                         if(tokens.has(0)) {
-                            throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                            throw error("no expression ahead", (tokens.getIndex(0)));
                         }
                         else {
-                            throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                            throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
                         }
                     }
 
@@ -365,13 +563,13 @@ public final class Parser {
         }
         else {
             if(tokens.has(0)) {
-                throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                throw error("no expression ahead", (tokens.getIndex(0)));
             }
             else {
-                throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
             }
         }
-        throw new ParseException("no expression ahead",(tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+        throw error("no expression ahead",(tokens.getIndex(-1) + tokens.getLength(-1)));
     }
 
     /**
@@ -382,28 +580,28 @@ public final class Parser {
     public Ast.Statement.If parseIfStatement() throws ParseException {
         try {
             Ast.Expression expr=parseExpression();
-            match("DO");
+            match(Token.Kind.DO);
             List<Ast.Statement> thenExpr=parseBlock();
             List<Ast.Statement> elseExpr=new ArrayList<Ast.Statement>();
-            if(peek("ELSE")) {
-                match("ELSE");
-                while (!peek("END")) {
+            if(peek(Token.Kind.ELSE)) {
+                match(Token.Kind.ELSE);
+                while (!peek(Token.Kind.END)) {
                     elseExpr.add(parseStatement());
                 }
-                match("END");
+                match(Token.Kind.END);
                 return new Ast.Statement.If(expr, thenExpr, elseExpr);
             }
             else{
-                match("END");
+                match(Token.Kind.END);
                 return new Ast.Statement.If(expr, thenExpr, elseExpr);
             }
         }
         catch (ParseException p) {
             if(tokens.has(0)) {
-                throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                throw error("no expression ahead", (tokens.getIndex(0)));
             }
             else {
-                throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
             }
         }
     }
@@ -417,24 +615,24 @@ public final class Parser {
         try {
             Ast.Expression expression_start = parseExpression();
             List<Ast.Statement.Case> caseList = new ArrayList<Ast.Statement.Case>();
-            while (peek("CASE"))
+            while (peek(Token.Kind.CASE))
                 caseList.add(parseCaseStatement());
-            if(match("DEFAULT")){
+            if(match(Token.Kind.DEFAULT)){
                 Optional<Ast.Expression> def = Optional.empty();
                 caseList.add(new Ast.Statement.Case(def,parseBlock()));
-                if(match("END"))
+                if(match(Token.Kind.END))
                     return new Ast.Statement.Switch(expression_start,caseList);
             }
         }
         catch(ParseException p)  {
             if(tokens.has(0)) {
-                throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                throw error("no expression ahead", (tokens.getIndex(0)));
             }
             else {
-                throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
             }
         }
-        throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+        throw error("no expression ahead", (tokens.getIndex(0)));
     }
 
     /**
@@ -443,13 +641,13 @@ public final class Parser {
      * default block of a switch statement, aka {@code CASE} or {@code DEFAULT}.
      */
     public Ast.Statement.Case parseCaseStatement() throws ParseException {
-        match("CASE");
+        match(Token.Kind.CASE);
         Optional<Ast.Expression> expression = Optional.of(parseExpression());
-        if(match(":")) {
+        if(match(Token.Kind.COLON)) {
             List<Ast.Statement> statements = parseBlock();
             return new Ast.Statement.Case(expression,statements);
         }
-        throw new ParseException("Invalid case syntax", (tokens.get(0).getIndex()));
+        throw error("Invalid case syntax", (tokens.getIndex(0)));
     }
 
     /**
@@ -458,15 +656,15 @@ public final class Parser {
      * {@code WHILE}.
      */
     public Ast.Statement.While parseWhileStatement() throws ParseException {
-        //match("WHILE");
+        //match(Token.Kind.WHILE);
         Ast.Expression expr=parseExpression();
         List<Ast.Statement> statements = new ArrayList<>();
-        if (!match("DO"))
-            throw new ParseException("No DO after the condition", tokens.get(0).getIndex());
+        if (!match(Token.Kind.DO))
+            throw error("No DO after the condition", tokens.getIndex(0));
 
-        match("DO");
+        match(Token.Kind.DO);
         List<Ast.Statement> listStatement= parseBlock();
-        match("END");
+        match(Token.Kind.END);
         return new Ast.Statement.While(expr,listStatement);
     }
 
@@ -478,15 +676,15 @@ public final class Parser {
     public Ast.Statement.Return parseReturnStatement() throws ParseException {
         try {
             Ast.Expression parse_expr = parseExpression();
-            match(";");
+            match(Token.Kind.SEMICOLON);
             return new Ast.Statement.Return(parse_expr);
         }
         catch(ParseException p) {
             if(tokens.has(0)) {
-                throw new ParseException("no expression ahead", (tokens.get(0).getIndex()));
+                throw error("no expression ahead", (tokens.getIndex(0)));
             }
             else {
-                throw new ParseException("no expression ahead", (tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length()));
+                throw error("no expression ahead", (tokens.getIndex(-1) + tokens.getLength(-1)));
             }
         }
     }
@@ -496,10 +694,10 @@ public final class Parser {
      */
     public Ast.Expression parseExpression() throws ParseException {
         try {
-            return parseLogicalExpression();
+            return parseBinaryExpression(LOGICAL);
         }
         catch(ParseException p) {
-            throw new ParseException("no expression returned", tokens.get(-1).getIndex()+tokens.get(-1).getLiteral().length());
+            throw error("no expression returned", tokens.getIndex(-1)+tokens.getLength(-1));
         }
     }
 
@@ -508,19 +706,11 @@ public final class Parser {
      */
     public Ast.Expression parseLogicalExpression() throws ParseException {
        try {
-           //checks if there is an expression on left handside of binary expression
-           Ast.Expression logical_expr = parseComparisonExpression();
-           while (match("&&") || match("||")) {
-               String op = tokens.get(-1).getLiteral();
-               Ast.Expression rhs = parseComparisonExpression();
-               logical_expr = new Ast.Expression.Binary(op, logical_expr, rhs);
-           }
-           //returns Binary expression with any operators if it has any
-           return logical_expr;
+           return parseBinaryExpression(LOGICAL);
        }
        ///throws exception if any part of the logical expression rule is violated
        catch(ParseException p) {
-           throw new ParseException("logical expression is violated",(tokens.get(-1).getIndex()+tokens.get(-1).getLiteral().length()));
+           throw error("logical expression is violated",(tokens.getIndex(-1)+tokens.getLength(-1)));
        }
     }
 
@@ -528,21 +718,12 @@ public final class Parser {
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expression parseComparisonExpression() throws ParseException {
-        //checks if left expression exist in try-catch
        try {
-           Ast.Expression compare_expr=parseAdditiveExpression();
-           //keep checking for operator, appending to the binary expression
-           while(match("<")|| match(">") || match("==")||match("!=")) {
-                 String op=tokens.get(-1).getLiteral();
-                 Ast.Expression rhs= parseAdditiveExpression();
-                 compare_expr=new Ast.Expression.Binary(op,compare_expr,rhs);
-           }
-           //returns the binary expression with operators, or without if not present
-           return compare_expr;
+           return parseBinaryExpression(COMPARISON);
        }
        //throws parse exception if any part of binary expr. is violated
        catch(ParseException p) {
-           throw new ParseException("logical expression is violated",(tokens.get(-1).getIndex()+tokens.get(-1).getLiteral().length()));
+           throw error("logical expression is violated",(tokens.getIndex(-1)+tokens.getLength(-1)));
        }
     }
 
@@ -550,21 +731,12 @@ public final class Parser {
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        // checks if additive expression exists on left hand side
         try {
-            Ast.Expression additive_expr=parseMultiplicativeExpression();
-            // builds binary expression with operators if they exist
-            while(match("+")|| match("-")) {
-                String op=tokens.get(-1).getLiteral();
-                Ast.Expression rhs= parseMultiplicativeExpression();
-                additive_expr=new Ast.Expression.Binary(op,additive_expr,rhs);
-            }
-            //returns binary expression
-            return additive_expr;
+            return parseBinaryExpression(ADDITIVE);
         }
         //throws parseexception of  previous token + previous token length
         catch(ParseException p) {
-            throw new ParseException("additive expression is violated",(tokens.get(-1).getIndex())+tokens.get(-1).getLiteral().length());
+            throw error("additive expression is violated",(tokens.getIndex(-1))+tokens.getLength(-1));
         }
     }
 
@@ -573,19 +745,36 @@ public final class Parser {
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
         try {
-            Ast.Expression multiplicative_expr=parsePrimaryExpression();
-            while(match("*")|| match("-")) {
-                String op=tokens.get(-1).getLiteral();
-                Ast.Expression rhs= parseMultiplicativeExpression();
-                multiplicative_expr=new Ast.Expression.Binary(op,multiplicative_expr,rhs);
-            }
-            return multiplicative_expr;
+            return parseBinaryExpression(MULTIPLICATIVE);
         }
         catch(ParseException p) {
-            throw new ParseException("multiplicative expression is violated",(tokens.get(-1).getIndex()+ tokens.get(-1).getLiteral().length()));
+            throw error("multiplicative expression is violated",(tokens.getIndex(-1)+ tokens.getLength(-1)));
         }
     }
 
+    /**
+     * Parses binary operators with a precedence of at least the given one by
+     * precedence climbing, using the {@link #PRECEDENCE} table instead of one
+     * method per level. The trees are the same as the grammar rules above:
+     * the logical, comparison and additive operators are left associative,
+     * while the multiplicative operators are right associative, so the right
+     * operand is parsed at the same level instead of the next one.
+     *
+     * Any {@link ParseException} is left to the caller, which replaces it
+     * anyway, instead of being rethrown once for each level.
+     */
+    private Ast.Expression parseBinaryExpression(int precedence) throws ParseException {
+        Ast.Expression lhs = parsePrimaryExpression();
+        Token.Kind op;
+        while (PRECEDENCE[(op = peekKind()).ordinal()] >= precedence) {
+            tokens.advance();
+            int level = PRECEDENCE[op.ordinal()];
+            Ast.Expression rhs = parseBinaryExpression(level == MULTIPLICATIVE ? level : level + 1);
+            lhs = new Ast.Expression.Binary(op.getLiteral(), lhs, rhs);
+        }
+        return lhs;
+    }
+
     /**
      * Parses the {@code primary-expression} rule. This is the top-level rule
      * for expressions and includes literal values, grouping, variables, and
@@ -594,32 +783,31 @@ public final class Parser {
      */
     public Ast.Expression parsePrimaryExpression() throws ParseException {
           // if-else statements for the various primary expressions and there returned expressions based on peek-match of tokens
-          if(peek("NIL")) {
-              match("NIL");
-              return new Ast.Expression.Literal(null);
-          }
-          else if(peek("TRUE")) {
-              match("TRUE");
-              Boolean true_statement=true;
-              return new Ast.Expression.Literal(true_statement);
+          switch(peekKind()) {
+              case NIL:
+                  tokens.advance();
+                  return new Ast.Expression.Literal(null);
+              case TRUE:
+                  tokens.advance();
+                  Boolean true_statement=true;
+                  return new Ast.Expression.Literal(true_statement);
+              case FALSE:
+                  tokens.advance();
+                  Boolean false_statement=false;
+                  return new Ast.Expression.Literal(false_statement);
           }
-          else if(peek("FALSE")) {
-              match("FALSE");
-              Boolean false_statement=false;
-              return new Ast.Expression.Literal(false_statement);
-          }
-          else if(peek(Token.Type.INTEGER)) {
-              BigInteger integer=new BigInteger(tokens.get(0).getLiteral());
+          if(peek(Token.Type.INTEGER)) {
+              BigInteger integer=new BigInteger(tokens.getLiteral(0));
               match(Token.Type.INTEGER);
               return new Ast.Expression.Literal(integer);
           }
           else if(peek(Token.Type.DECIMAL)) {
-              BigDecimal decimal=new BigDecimal(tokens.get(0).getLiteral());
+              BigDecimal decimal=new BigDecimal(tokens.getLiteral(0));
               match(Token.Type.DECIMAL);
               return new Ast.Expression.Literal(decimal);
           }
           else if(peek(Token.Type.CHARACTER)) {
-              String s=tokens.get(0).getLiteral();
+              String s=tokens.getLiteral(0);
               match(Token.Type.CHARACTER);
               // removes the single quotes and escape characters. remove the double escape within string to be parsed as a single escape, not literal
               s = s.replaceAll("\'","");
@@ -633,7 +821,7 @@ public final class Parser {
               return new Ast.Expression.Literal(s.charAt(0));
           }
           else if(peek(Token.Type.STRING)) {
-              String s=tokens.get(0).getLiteral();
+              String s=tokens.getLiteral(0);
               match(Token.Type.STRING);
               // removes the double quotes and escape characters. reasoning for why is mentioned above. these are just the rules for the grammar
               s = s.replaceAll("\"","");
@@ -647,91 +835,99 @@ public final class Parser {
               return new Ast.Expression.Literal(s);
           }
           else if(peek(Token.Type.IDENTIFIER)) {
-              String identifier=tokens.get(0).getLiteral();
+              String identifier=tokens.getLiteral(0);
               match(Token.Type.IDENTIFIER);
-              if(peek("(")) {
-                   match("(");
+              if(peek(Token.Kind.LEFT_PAREN)) {
+                   match(Token.Kind.LEFT_PAREN);
                   List<Ast.Expression>arguments=new ArrayList<Ast.Expression>();
-                  if(peek(")")) {
-                      match(")");
+                  if(peek(Token.Kind.RIGHT_PAREN)) {
+                      match(Token.Kind.RIGHT_PAREN);
                       return new Ast.Expression.Function(identifier,arguments);
                   }
                   else {
                       Ast.Expression expression_first=parseExpression();
                       arguments.add(expression_first);
-                      while(peek(",")) {
-                          match(",");
+                      while(peek(Token.Kind.COMMA)) {
+                          match(Token.Kind.COMMA);
                           Ast.Expression added_expr=parseExpression();
                           arguments.add(added_expr);
                       }
-                      if (match(")")){
+                      if (match(Token.Kind.RIGHT_PAREN)){
                           return new Ast.Expression.Function(identifier,arguments);
                       }
                       else {
                           //Throw parse error, no ending parentheses TODO
-                          throw new ParseException("No ending Parenthesis", tokens.get(0).getIndex());
+                          throw error("No ending Parenthesis", tokens.getIndex(0));
                       }
                   }
 
               }
-              else if(peek("[")) {
-                    match("[");
+              else if(peek(Token.Kind.LEFT_BRACKET)) {
+                    match(Token.Kind.LEFT_BRACKET);
                     try{
                         Ast.Expression list_expr= parseExpression();
-                        peek("]");
-                        if(!match("]")) {
-                            throw new ParseException("no closing parentheses or expression inside group", tokens.get(-1).getIndex()+ tokens.get(-1).getLiteral().length());
+                        peek(Token.Kind.RIGHT_BRACKET);
+                        if(!match(Token.Kind.RIGHT_BRACKET)) {
+                            throw error("no closing parentheses or expression inside group", tokens.getIndex(-1)+ tokens.getLength(-1));
                         }
                         return new Ast.Expression.Access(Optional.of(list_expr),identifier);
                     }
                     catch(ParseException p) {
-                        throw new ParseException("no closing parentheses or expression inside list", tokens.get(-1).getIndex()+tokens.get(-1).getLiteral().length());
+                        throw error("no closing parentheses or expression inside list", tokens.getIndex(-1)+tokens.getLength(-1));
                     }
               }
               else {
                   return new Ast.Expression.Access(Optional.empty(),identifier);
               }
           }
-          else if(peek("(")) {
-               match("(");
+          else if(peek(Token.Kind.LEFT_PAREN)) {
+               match(Token.Kind.LEFT_PAREN);
                 try {
                     Ast.Expression expr=parseExpression();
-                    peek(")");
-                    if(!match(")")) {
-                        throw new ParseException("no closing parentheses or expression inside group", tokens.get(-1).getIndex()+ tokens.get(-1).getLiteral().length());
+                    peek(Token.Kind.RIGHT_PAREN);
+                    if(!match(Token.Kind.RIGHT_PAREN)) {
+                        throw error("no closing parentheses or expression inside group", tokens.getIndex(-1)+ tokens.getLength(-1));
                     }
 
                     return new Ast.Expression.Group(expr);
                 }
                 catch(ParseException p) {
-                    throw new ParseException("no closing parentheses or expression inside group", tokens.get(-1).getIndex()+ tokens.get(-1).getLiteral().length());
+                    throw error("no closing parentheses or expression inside group", tokens.getIndex(-1)+ tokens.getLength(-1));
                 }
           }
-          throw new ParseException("not a primary expression", tokens.get(-1).getIndex()+ tokens.get(-1).getLiteral().length());
+          throw error("not a primary expression", tokens.getIndex(-1)+ tokens.getLength(-1));
     }
 
     /**
      * As in the lexer, returns {@code true} if the current sequence of tokens
      * matches the given patterns. Unlike the lexer, the pattern is not a regex;
      * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
+     * type is the same, a {@link Token.Kind}, which matches if the token is
+     * that keyword or operator, or a {@link String}, which matches if the
+     * token's literal is the same.
      *
      * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}, and
+     * {@code Token(IDENTIFIER, "LET")} is also matched by {@code
+     * peek(Token.Kind.LET)}.
      */
     private boolean peek(Object... patterns) {
        for(int i=0;i< patterns.length;i++){
            if(!tokens.has(i)) {
                return false;
            }
+           else if (patterns[i] instanceof Token.Kind) {
+               if(patterns[i] != tokens.getKind(i)) {
+                   return false;
+               }
+           }
            else if (patterns[i] instanceof Token.Type) {
-               if(patterns[i] != tokens.get(i).getType()) {
+               if(patterns[i] != tokens.getType(i)) {
                    return false;
                }
            }
            else if(patterns[i] instanceof String){
-               if(!patterns[i].equals(tokens.get(i).getLiteral())) {
+               if(!tokens.matches(i, (String) patterns[i])) {
                    return false;
                }
            }
@@ -742,6 +938,65 @@ public final class Parser {
        return true;
     }
 
+    /**
+     * Creates the exception for a parse error. In recovery mode the exception
+     * is stackless, since it is only caught and recorded.
+     */
+    private ParseException error(String message, int index) {
+        return diagnostics == null ? new ParseException(message, index) : ParseException.stackless(message, index);
+    }
+
+    /**
+     * Runs the rule, which throws as usual unless in recovery mode. Then, any
+     * error is recorded and the tokens are skipped to the next synchronization
+     * point: past a {@code ;}, or up to a {@code FUN} or {@code END}. At the top
+     * level an {@code END} can only be the end of a function which failed to
+     * parse, so it is skipped as well.
+     */
+    private void parseRecovering(boolean topLevel, Runnable rule) {
+        if (diagnostics == null) {
+            rule.run();
+            return;
+        }
+        int start = tokens.getPosition();
+        try {
+            rule.run();
+            return;
+        } catch (ParseException e) {
+            diagnostics.add(e);
+        } catch (IndexOutOfBoundsException e) {
+            //the rules only read past the tokens at the end of the input
+            diagnostics.add(tokens.has(0)
+                    ? error("Unexpected token", tokens.getIndex(0))
+                    : error("Unexpected end of input", tokens.getIndex(-1) + tokens.getLength(-1)));
+        }
+        while (tokens.has(0)) {
+            switch (tokens.getKind(0)) {
+                case SEMICOLON:
+                    tokens.advance();
+                    return;
+                case END:
+                    if (topLevel) {
+                        tokens.advance();
+                    }
+                    return;
+                case FUN:
+                    if (tokens.getPosition() != start) {
+                        return;
+                    }
+            }
+            tokens.advance();
+        }
+    }
+
+    /**
+     * Returns the {@link Token.Kind} of the current token, or {@link
+     * Token.Kind#NONE} if there are no tokens left, for use in a {@code switch}.
+     */
+    private Token.Kind peekKind() {
+        return tokens.has(0) ? tokens.getKind(0) : Token.Kind.NONE;
+    }
+
     /**
      * As in the lexer, returns {@code true} if {@link #peek(Object...)} is true
      * and advances the token stream.
@@ -758,32 +1013,90 @@ public final class Parser {
 
     private static final class TokenStream {
 
-        private final List<Token> tokens;
+        private final TokenBuffer tokens;
+        private final Iterator<Token> source;
         private int index = 0;
+        private int limit = Integer.MAX_VALUE;
+        private int position = 0;
 
-        private TokenStream(List<Token> tokens) {
+        /**
+         * Creates a token stream over the buffer. If source is not null, the
+         * buffer is a window which is filled from source on demand, and index
+         * is relative to the start of that window.
+         */
+        private TokenStream(TokenBuffer tokens, Iterator<Token> source) {
             this.tokens = tokens;
+            this.source = source;
         }
 
         /**
-         * Returns true if there is a token at index + offset.
+         * Returns true if there is a token at index + offset, before the limit.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            while (source != null && index + offset >= tokens.size() && source.hasNext()) {
+                tokens.add(source.next());
+            }
+            return index + offset < Math.min(tokens.size(), limit);
         }
 
         /**
-         * Gets the token at index + offset.
+         * The accessors below return the parts of the token at index + offset
+         * without creating a {@link Token}.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        public Token.Type getType(int offset) {
+            has(offset);
+            return tokens.getType(index + offset);
+        }
+
+        public Token.Kind getKind(int offset) {
+            has(offset);
+            return tokens.getKind(index + offset);
+        }
+
+        public String getLiteral(int offset) {
+            has(offset);
+            return tokens.getLiteral(index + offset);
+        }
+
+        public int getIndex(int offset) {
+            has(offset);
+            return tokens.getIndex(index + offset);
+        }
+
+        public int getLength(int offset) {
+            has(offset);
+            return tokens.getLength(index + offset);
+        }
+
+        /**
+         * Returns true if the literal of the token at index + offset is equal
+         * to the given literal.
+         */
+        public boolean matches(int offset, String literal) {
+            has(offset);
+            return tokens.matches(index + offset, literal);
+        }
+
+        /**
+         * Returns the number of tokens advanced past, which unlike the index
+         * is not affected by discarding tokens.
+         */
+        public int getPosition() {
+            return position;
         }
 
         /**
-         * Advances to the next token, incrementing the index.
+         * Advances to the next token, incrementing the index. When streaming,
+         * tokens before the previous one are discarded.
          */
         public void advance() {
             index++;
+            position++;
+            if (source != null && index > 1) {
+                int discard = Math.min(index - 1, tokens.size());
+                tokens.removeFirst(discard);
+                index -= discard;
+            }
         }
 
     }
@@ -0,0 +1,153 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A directory of class files compiled by {@link BytecodeGenerator}, keyed by
+ * the SHA-256 hash of the source text and {@link BytecodeGenerator#VERSION},
+ * so running an unchanged source skips lexing, parsing, analyzing and
+ * generating entirely.
+ *
+ * Each entry is written to a temporary file which is then renamed, so other
+ * processes sharing the directory never read a partial entry. The last
+ * modified time of an entry is its last use, and once the entries exceed the
+ * maximum size the least recently used ones are deleted.
+ */
+public final class ProgramCache {
+
+    private static final String EXTENSION = ".class";
+
+    /**
+     * The last time an entry was used, which makes uses within the same
+     * millisecond still ordered.
+     */
+    private static final AtomicLong LAST_USE = new AtomicLong();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ProgramCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs the source, using its cached class file if there is one and
+     * compiling and caching it otherwise.
+     */
+    public int run(String source) {
+        byte[] bytes = get(source);
+        if (bytes == null) {
+            Ast.Source ast = new Parser(new TableLexer(source).lexBuffer()).parseSource();
+            new Analyzer(new Scope(null)).visit(ast);
+            bytes = BytecodeGenerator.generate(Optimizer.optimize(ast));
+            put(source, bytes);
+        }
+        return BytecodeGenerator.run(bytes);
+    }
+
+    /**
+     * Returns the cached class file for the source, or null if there is none.
+     */
+    public byte[] get(String source) {
+        Path path = path(source);
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            Files.setLastModifiedTime(path, now());
+            return bytes;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Caches the class file for the source, then evicts the least recently
+     * used entries until the cache fits in its maximum size.
+     */
+    public void put(String source, byte[] bytes) {
+        Path path = path(source);
+        try {
+            Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporary, bytes);
+                Files.setLastModifiedTime(temporary, now());
+                try {
+                    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            evict();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        List<FileTime> times = new ArrayList<>();
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path entry : stream) {
+                try {
+                    size += Files.size(entry);
+                    times.add(Files.getLastModifiedTime(entry));
+                    entries.add(entry);
+                } catch (NoSuchFileException e) {
+                    // evicted by another process
+                }
+            }
+        }
+        if (size <= maxBytes) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(times::get));
+        for (int i : order) {
+            if (size <= maxBytes) {
+                break;
+            }
+            try {
+                long entrySize = Files.size(entries.get(i));
+                Files.delete(entries.get(i));
+                size -= entrySize;
+            } catch (NoSuchFileException e) {
+                // evicted by another process
+            }
+        }
+    }
+
+    private Path path(String source) {
+        return directory.resolve(JavacRunner.hash(BytecodeGenerator.VERSION + "\n" + source) + EXTENSION);
+    }
+
+    private static FileTime now() {
+        long time = LAST_USE.updateAndGet(last -> Math.max(System.currentTimeMillis(), last + 1));
+        return FileTime.fromMillis(time);
+    }
+
+}
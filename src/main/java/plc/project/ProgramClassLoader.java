@@ -0,0 +1,34 @@
+package plc.project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads compiled programs from the bytes of their class files in memory, so
+ * they can be run without writing them to disk. Each program gets its own
+ * loader, so programs with the same class names do not conflict and are
+ * unloaded once they are no longer used.
+ */
+public final class ProgramClassLoader extends ClassLoader {
+
+    private final Map<String, byte[]> classes;
+
+    /**
+     * Creates a loader for the classes, mapping binary names such as {@code
+     * Main} to the bytes of their class files.
+     */
+    public ProgramClassLoader(Map<String, byte[]> classes) {
+        super(ProgramClassLoader.class.getClassLoader());
+        this.classes = new HashMap<>(classes);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,202 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves each {@link Ast.Expression.Access} to the depth and slot its
+ * variable will have when the {@link Interpreter} evaluates it, which mirrors
+ * the scopes created by the interpreter: one for the globals, one for each
+ * function call, and one for each branch of an if statement, iteration of a
+ * while loop or case of a switch which is taken, unless its statements declare
+ * no variables. Variables are defined in the same order as the statements
+ * declaring them are executed, so their slots are known ahead of time.
+ *
+ * Accesses to variables which are not declared in the source, such as those
+ * defined by the caller of the interpreter, are left unresolved and looked up
+ * by name.
+ */
+public final class Resolver implements Ast.Visitor<Void> {
+
+    /**
+     * The names of the variables in each scope, innermost last. Slots which
+     * were already defined before resolving are null.
+     */
+    private final List<List<String>> scopes = new ArrayList<>();
+
+    /**
+     * Creates a resolver for a source which will be evaluated in the given
+     * scope, whose existing variables take up the first slots.
+     */
+    public Resolver(Scope scope) {
+        List<String> globals = new ArrayList<>();
+        for (int i = 0; i < scope.getVariableCount(); i++) {
+            globals.add(null);
+        }
+        scopes.add(globals);
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Global global : ast.getGlobals()) {
+            visit(global);
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            visit(function);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        ast.getValue().ifPresent(this::visit);
+        declare(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        scopes.add(new ArrayList<>(ast.getParameters()));
+        try {
+            ast.getStatements().forEach(this::visit);
+        } finally {
+            scopes.remove(scopes.size() - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        declare(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getThenStatements());
+        visitBlock(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        ast.getOffset().ifPresent(this::visit);
+        for (int depth = 0; depth < scopes.size(); depth++) {
+            int slot = scopes.get(scopes.size() - 1 - depth).indexOf(ast.getName());
+            if (slot != -1) {
+                ast.setSlot(depth, slot);
+                return null;
+            }
+        }
+        ast.setSlot(-1, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    private void visitBlock(List<Ast.Statement> statements) {
+        if (!declares(statements)) {
+            statements.forEach(this::visit);
+            return;
+        }
+        scopes.add(new ArrayList<>());
+        try {
+            statements.forEach(this::visit);
+        } finally {
+            scopes.remove(scopes.size() - 1);
+        }
+    }
+
+    /**
+     * Returns true if the statements of a block declare a variable, and so
+     * need a scope of their own. Blocks nested in them have their own scopes.
+     */
+    static boolean declares(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Declares the name in the innermost scope. A name declared twice fails
+     * when it is defined by the interpreter, so only the first is kept.
+     */
+    private void declare(String name) {
+        List<String> scope = scopes.get(scopes.size() - 1);
+        scope.add(scope.contains(name) ? null : name);
+    }
+
+}
@@ -1,16 +1,31 @@
 package plc.project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Variables are stored in slots in the order they are defined, which a {@link
+ * Resolver} can compute ahead of time so they are found without comparing
+ * names. Scopes usually hold only a few variables, so lookups by name are a
+ * scan over the slots instead of a hash lookup. Functions are stored by name
+ * in arrays indexed by arity, so looking one up does not create a key, and
+ * the map is only created when a function is defined, since most scopes have
+ * none.
+ */
 public final class Scope {
 
+    private static final Environment.Variable[] EMPTY = new Environment.Variable[0];
+    private static final Environment.Function[] NO_FUNCTIONS = new Environment.Function[0];
+
     private final Scope parent;
-    private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private Environment.Variable[] variables = EMPTY;
+    private int size = 0;
+    private Map<String, Environment.Function[]> functions = null;
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -25,23 +40,64 @@ public final class Scope {
     }
 
     public Environment.Variable defineVariable(String name, String jvmName, Environment.Type type, boolean mutable, Environment.PlcObject value) {
-        if (variables.containsKey(name)) {
+        if (find(name) != null) {
             throw new RuntimeException("The variable " + name + " is already defined in this scope.");
         } else {
             Environment.Variable variable = new Environment.Variable(name, jvmName, type, mutable, value);
-            variables.put(variable.getName(), variable);
-            return variables.get(name);
+            if (size == variables.length) {
+                variables = Arrays.copyOf(variables, Math.max(4, 2 * size));
+            }
+            variables[size++] = variable;
+            return variable;
         }
     }
 
     public Environment.Variable lookupVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookupVariable(name);
-        } else {
-            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Variable variable = scope.find(name);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns the variable in the given slot of the scope depth parents up
+     * from this one, or null if that scope has no such slot.
+     */
+    public Environment.Variable lookupVariable(int depth, int slot) {
+        Scope scope = this;
+        for (int i = 0; i < depth && scope != null; i++) {
+            scope = scope.parent;
+        }
+        return scope != null && slot < scope.size ? scope.variables[slot] : null;
+    }
+
+    /**
+     * Returns the number of variables defined in this scope, which is also the
+     * slot of the next variable to be defined.
+     */
+    public int getVariableCount() {
+        return size;
+    }
+
+    /**
+     * Removes the variables defined in this scope, so a loop can reuse one
+     * scope for all of its iterations instead of creating one for each.
+     */
+    public void clear() {
+        Arrays.fill(variables, 0, size, null);
+        size = 0;
+    }
+
+    private Environment.Variable find(String name) {
+        for (int i = 0; i < size; i++) {
+            if (name.equals(variables[i].getName())) {
+                return variables[i];
+            }
         }
+        return null;
     }
 
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
@@ -53,31 +109,111 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
+        if (find(name, parameterTypes.size()) != null) {
             throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
         } else {
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            if (functions == null) {
+                functions = new HashMap<>();
+            }
+            Environment.Function[] overloads = functions.getOrDefault(name, NO_FUNCTIONS);
+            if (overloads.length <= func.getArity()) {
+                overloads = Arrays.copyOf(overloads, func.getArity() + 1);
+                functions.put(name, overloads);
+            }
+            overloads[func.getArity()] = func;
             return func;
         }
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
-        } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Function function = scope.find(name, arity);
+            if (function != null) {
+                return function;
+            }
+        }
+        throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+    }
+
+    /**
+     * Looks up a function as in {@link #lookupFunction(String, int)}, but
+     * returns a {@link FunctionHandle} which can be cached and checked later
+     * instead of looking the function up again.
+     */
+    public FunctionHandle resolveFunction(String name, int arity) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Function function = scope.find(name, arity);
+            if (function != null) {
+                return new FunctionHandle(scope, function);
+            }
         }
+        throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+    }
+
+    private Environment.Function find(String name, int arity) {
+        Environment.Function[] overloads = functions != null ? functions.get(name) : null;
+        return overloads != null && arity < overloads.length ? overloads[arity] : null;
+    }
+
+    /**
+     * A function along with the scope defining it. Since functions are never
+     * removed, the handle remains valid for any scope whose parent chain
+     * reaches the owner without passing a scope which defines a function with
+     * the same name and arity.
+     */
+    public static final class FunctionHandle {
+
+        private final Scope owner;
+        private final Environment.Function function;
+
+        private FunctionHandle(Scope owner, Environment.Function function) {
+            this.owner = owner;
+            this.function = function;
+        }
+
+        public Scope getOwner() {
+            return owner;
+        }
+
+        public Environment.Function getFunction() {
+            return function;
+        }
+
+        /**
+         * Returns true if looking up this function from the given scope would
+         * find the same function. Scopes without functions are passed without
+         * any lookup, so this is usually just a walk up the parent chain.
+         */
+        public boolean isValid(Scope scope) {
+            for (; scope != null; scope = scope.parent) {
+                if (scope == owner) {
+                    return true;
+                } else if (scope.functions != null && scope.find(function.getName(), function.getArity()) != null) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
     }
 
     @Override
     public String toString() {
+        List<String> names = new ArrayList<>();
+        if (functions != null) {
+            functions.forEach((name, overloads) -> {
+                for (int arity = 0; arity < overloads.length; arity++) {
+                    if (overloads[arity] != null) {
+                        names.add(name + "/" + arity);
+                    }
+                }
+            });
+        }
         return "Scope{" +
                 "parent=" + parent +
-                ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", variables=" + Arrays.stream(variables, 0, size).map(Environment.Variable::getName).collect(Collectors.toList()) +
+                ", functions=" + names +
                 '}';
     }
 
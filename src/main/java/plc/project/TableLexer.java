@@ -0,0 +1,328 @@
+package plc.project;
+
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A lexer producing the same tokens as {@link Lexer}, but driven by a table of
+ * character classes instead of regular expressions. Every {@code peek} in
+ * {@link Lexer} compiles a {@link java.util.regex.Pattern} and allocates a
+ * one-character string per character; here each check is a single array
+ * lookup against the current character of the {@link Lexer.CharStream}, so the
+ * only allocations are the emitted tokens themselves.
+ *
+ * The methods mirror their counterparts in {@link Lexer} one-to-one, including
+ * the indices of any {@link ParseException} thrown. The only difference is for
+ * inputs on which {@link Lexer#lex()} makes no progress and never returns (an
+ * unescaped line terminator inside a string, or a character such as {@code |}
+ * which lexes to an empty token); these throw a {@link ParseException} at the
+ * offending character instead.
+ *
+ * Tokens can also be pulled one at a time through the {@link Iterator}
+ * interface, which together with {@link #TableLexer(Reader)} lexes a source
+ * without holding either the full input or the full token list in memory. For
+ * files, {@link MappedSource} avoids copying the input onto the heap at all.
+ */
+public final class TableLexer implements Iterator<Token> {
+
+    private static final int WHITESPACE = 1;
+    private static final int IDENTIFIER_START = 2;
+    private static final int IDENTIFIER_PART = 4;
+    private static final int NUMBER_START = 8;
+    private static final int DIGIT = 16;
+    private static final int ESCAPE = 32;
+
+    /**
+     * Character classes for ASCII, matching the patterns used by {@link Lexer}.
+     * Characters outside of ASCII belong to none of these classes.
+     */
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c : "\b\t\n\u000B\f\r ".toCharArray()) {
+            CLASSES[c] |= WHITESPACE;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] |= IDENTIFIER_START | IDENTIFIER_PART;
+            CLASSES[c + 'a' - 'A'] |= IDENTIFIER_START | IDENTIFIER_PART;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] |= IDENTIFIER_PART | NUMBER_START | DIGIT;
+        }
+        CLASSES['@'] |= IDENTIFIER_START;
+        CLASSES['_'] |= IDENTIFIER_PART;
+        CLASSES['-'] |= IDENTIFIER_PART | NUMBER_START;
+        CLASSES['|'] |= NUMBER_START;
+        for (char c : "bnrt\\\"'".toCharArray()) {
+            CLASSES[c] |= ESCAPE;
+        }
+    }
+
+    private final CharSequence input;
+    private final Lexer.CharStream chars;
+
+    public TableLexer(CharSequence input) {
+        this.input = input;
+        chars = new Lexer.CharStream(input);
+    }
+
+    /**
+     * Creates a lexer reading its input incrementally from the reader, which
+     * is read in blocks and does not need to be buffered.
+     */
+    public TableLexer(Reader reader) {
+        this.input = null;
+        chars = new Lexer.CharStream(reader);
+    }
+
+    public TableLexer(ReadableByteChannel channel, Charset charset) {
+        this(Channels.newReader(channel, charset));
+    }
+
+    /**
+     * Repeatedly lexes the input using {@link #lexToken()}, skipping over
+     * whitespace as in {@link Lexer#lex()}.
+     */
+    public List<Token> lex() {
+        List<Token> tokens = new ArrayList<>();
+        while (hasNext()) {
+            tokens.add(next());
+        }
+        return tokens;
+    }
+
+    /**
+     * Lexes the remaining input into a {@link TokenBuffer}. Unlike {@link
+     * #lex()}, this does not create a {@link Token} for each token unless the
+     * input is being read from a {@link Reader}.
+     */
+    public TokenBuffer lexBuffer() {
+        TokenBuffer tokens = new TokenBuffer(input);
+        while (hasNext()) {
+            if (input == null) {
+                tokens.add(next());
+                continue;
+            }
+            int start = chars.getIndex();
+            Token.Type type = scanToken();
+            chars.skip();
+            if (chars.getIndex() == start) {
+                throw new ParseException("Invalid Character", start);
+            }
+            tokens.add(type, start, chars.getIndex() - start);
+        }
+        return tokens;
+    }
+
+    /**
+     * Skips any whitespace and returns true if there is another token.
+     */
+    @Override
+    public boolean hasNext() {
+        while (chars.has(0) && is(chars.get(0), WHITESPACE)) {
+            chars.advance();
+            chars.skip();
+        }
+        return chars.has(0);
+    }
+
+    /**
+     * Lexes the next token, as in a single iteration of {@link #lex()}.
+     */
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token token = lexToken();
+        if (token.getIndex() == chars.getIndex()) {
+            throw new ParseException("Invalid Character", chars.getIndex());
+        }
+        return token;
+    }
+
+    /**
+     * Determines the type of the next token and delegates to the appropriate
+     * lex method, as in {@link Lexer#lexToken()}.
+     */
+    public Token lexToken() {
+        return chars.emit(scanToken());
+    }
+
+    public Token lexIdentifier() {
+        return chars.emit(scanIdentifier());
+    }
+
+    public Token lexNumber() {
+        return chars.emit(scanNumber());
+    }
+
+    public Token lexCharacter() {
+        return chars.emit(scanCharacter());
+    }
+
+    public Token lexString() {
+        return chars.emit(scanString());
+    }
+
+    public void lexEscape() {
+        if (match('\\') && chars.has(0) && !is(chars.get(0), ESCAPE)) {
+            throw new ParseException("Invalid String", chars.getIndex());
+        }
+    }
+
+    public Token lexOperator() {
+        return chars.emit(scanOperator());
+    }
+
+    /**
+     * The scan methods advance past the next token in the same way as their
+     * lex counterparts, but return only its type instead of emitting it.
+     */
+    private Token.Type scanToken() {
+        if (peek(0, IDENTIFIER_START)) {
+            return scanIdentifier();
+        } else if (peek(0, NUMBER_START)) {
+            return scanNumber();
+        } else if (peek(0, '\'')) {
+            return scanCharacter();
+        } else if (peek(0, '"')) {
+            return scanString();
+        }
+        return scanOperator();
+    }
+
+    private Token.Type scanIdentifier() {
+        match(IDENTIFIER_START);
+        while (match(IDENTIFIER_PART));
+        return Token.Type.IDENTIFIER;
+    }
+
+    private Token.Type scanNumber() {
+        match('-');
+        if (match('0')) {
+            if (!peek(0, '.') || !peek(1, DIGIT)) {
+                return Token.Type.INTEGER;
+            }
+            chars.advance();
+            while (match(DIGIT));
+            return Token.Type.DECIMAL;
+        } else if (peek(0, DIGIT)) {
+            int decimal = 0;
+            chars.advance();
+            while (peek(0, DIGIT) || peek(0, '.')) {
+                if (peek(0, '.')) {
+                    decimal++;
+                    if (decimal > 1) {
+                        return Token.Type.DECIMAL;
+                    }
+                    if (!peek(1, DIGIT)) {
+                        return Token.Type.INTEGER;
+                    }
+                    chars.advance();
+                }
+                match(DIGIT);
+            }
+            return decimal > 0 ? Token.Type.DECIMAL : Token.Type.INTEGER;
+        }
+        return Token.Type.OPERATOR;
+    }
+
+    private Token.Type scanCharacter() {
+        if (!peek(0, '\'') || !peekAny(1)) {
+            throw new ParseException("Invalid String", chars.getIndex());
+        }
+        chars.advance();
+        if (chars.has(0) && chars.get(0) != '\'' && chars.get(0) != '\\' && peek(1, '\'')) {
+            chars.advance();
+            chars.advance();
+            return Token.Type.CHARACTER;
+        } else if (match('\\')) {
+            if (match(ESCAPE) && match('\'')) {
+                return Token.Type.CHARACTER;
+            }
+        } else if (!peek(0, '\'') && peekAny(0)) {
+            chars.advance();
+        }
+        throw new ParseException("Invalid Character", chars.getIndex());
+    }
+
+    private Token.Type scanString() {
+        if (!peek(0, '"') || !peekAny(1)) {
+            throw new ParseException("Invalid String", chars.getIndex());
+        }
+        chars.advance();
+        while (chars.has(0) && chars.get(0) != '"') {
+            lexEscape();
+            if (chars.has(0)) {
+                if (!peekAny(0)) {
+                    throw new ParseException("Invalid String", chars.getIndex());
+                }
+                chars.advance();
+            }
+        }
+        if (!match('"')) {
+            throw new ParseException("Invalid String", chars.getIndex());
+        }
+        return Token.Type.STRING;
+    }
+
+    private Token.Type scanOperator() {
+        if (peek(1, '=') && (peek(0, '!') || peek(0, '='))
+                || peek(0, '&') && peek(1, '&')
+                || peek(0, '|') && peek(1, '|')) {
+            chars.advance();
+            chars.advance();
+        } else if (peekAny(0)) {
+            chars.advance();
+        }
+        return Token.Type.OPERATOR;
+    }
+
+    private static boolean is(char c, int mask) {
+        return c < CLASSES.length && (CLASSES[c] & mask) != 0;
+    }
+
+    /**
+     * Returns true if the character is matched by the regex {@code .}, which is
+     * everything except line terminators.
+     */
+    private static boolean isAny(char c) {
+        return c != '\n' && c != '\r' && c != '\u0085' && c != '\u2028' && c != '\u2029';
+    }
+
+    private boolean peek(int offset, int mask) {
+        return chars.has(offset) && is(chars.get(offset), mask);
+    }
+
+    private boolean peek(int offset, char c) {
+        return chars.has(offset) && chars.get(offset) == c;
+    }
+
+    private boolean peekAny(int offset) {
+        return chars.has(offset) && isAny(chars.get(offset));
+    }
+
+    private boolean match(int mask) {
+        boolean peek = peek(0, mask);
+        if (peek) {
+            chars.advance();
+        }
+        return peek;
+    }
+
+    private boolean match(char c) {
+        boolean peek = peek(0, c);
+        if (peek) {
+            chars.advance();
+        }
+        return peek;
+    }
+
+}
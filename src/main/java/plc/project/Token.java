@@ -1,5 +1,7 @@
 package plc.project;
 
+import java.util.Arrays;
+
 public final class Token {
 
     public enum Type {
@@ -11,12 +13,119 @@ public final class Token {
         OPERATOR
     }
 
+    /**
+     * The keywords and operators of the grammar, which are classified when a
+     * token is created so the parser can compare tokens with {@code ==} or a
+     * {@code switch} instead of comparing literals. All other literals are
+     * {@link #NONE}.
+     */
+    public enum Kind {
+        NONE(null),
+        LIST("LIST"),
+        VAR("VAR"),
+        VAL("VAL"),
+        FUN("FUN"),
+        DO("DO"),
+        END("END"),
+        LET("LET"),
+        SWITCH("SWITCH"),
+        CASE("CASE"),
+        DEFAULT("DEFAULT"),
+        IF("IF"),
+        ELSE("ELSE"),
+        WHILE("WHILE"),
+        RETURN("RETURN"),
+        NIL("NIL"),
+        TRUE("TRUE"),
+        FALSE("FALSE"),
+        SEMICOLON(";"),
+        COLON(":"),
+        COMMA(","),
+        ASSIGN("="),
+        LEFT_PAREN("("),
+        RIGHT_PAREN(")"),
+        LEFT_BRACKET("["),
+        RIGHT_BRACKET("]"),
+        AND("&&"),
+        OR("||"),
+        LESS("<"),
+        GREATER(">"),
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        PLUS("+"),
+        MINUS("-"),
+        TIMES("*"),
+        DIVIDE("/");
+
+        /**
+         * The kinds with a literal, indexed by the first character.
+         */
+        private static final Kind[][] BY_FIRST = new Kind[128][0];
+
+        static {
+            for (Kind kind : values()) {
+                if (kind.literal != null) {
+                    Kind[] kinds = BY_FIRST[kind.literal.charAt(0)];
+                    kinds = Arrays.copyOf(kinds, kinds.length + 1);
+                    kinds[kinds.length - 1] = kind;
+                    BY_FIRST[kind.literal.charAt(0)] = kinds;
+                }
+            }
+        }
+
+        private final String literal;
+
+        Kind(String literal) {
+            this.literal = literal;
+        }
+
+        public String getLiteral() {
+            return literal;
+        }
+
+        /**
+         * Classifies the literal in the given range of the text, without
+         * creating it.
+         */
+        public static Kind of(CharSequence text, int start, int end) {
+            if (start == end || text.charAt(start) >= BY_FIRST.length) {
+                return NONE;
+            }
+            for (Kind kind : BY_FIRST[text.charAt(start)]) {
+                if (kind.literal.length() == end - start && matches(kind.literal, text, start)) {
+                    return kind;
+                }
+            }
+            return NONE;
+        }
+
+        private static boolean matches(String literal, CharSequence text, int start) {
+            for (int i = 1; i < literal.length(); i++) {
+                if (literal.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
     private final Type type;
-    private final String literal;
+    private final Kind kind;
+    private CharSequence literal;
     private final int index;
 
     public Token(Type type, String literal, int index) {
+        this(type, (CharSequence) literal, index);
+    }
+
+    /**
+     * Creates a token whose literal is only converted to a {@link String} when
+     * it is first needed, such as a slice of a {@link MappedSource}.
+     */
+    public Token(Type type, CharSequence literal, int index) {
         this.type = type;
+        this.kind = Kind.of(literal, 0, literal.length());
         this.literal = literal;
         this.index = index;
     }
@@ -25,8 +134,15 @@ public final class Token {
         return type;
     }
 
+    public Kind getKind() {
+        return kind;
+    }
+
     public String getLiteral() {
-        return literal;
+        if (!(literal instanceof String)) {
+            literal = literal.toString();
+        }
+        return (String) literal;
     }
 
     public int getIndex() {
@@ -37,13 +153,13 @@ public final class Token {
     public boolean equals(Object obj) {
         return obj instanceof Token
                 && type == ((Token) obj).type
-                && literal.equals(((Token) obj).literal)
+                && getLiteral().equals(((Token) obj).getLiteral())
                 && index == ((Token) obj).index;
     }
 
     @Override
     public String toString() {
-        return type + "=" + literal + "@" + index;
+        return type + "=" + getLiteral() + "@" + index;
     }
 
 }
@@ -0,0 +1,188 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A compact list of tokens, stored as parallel arrays of types, indices, and
+ * lengths instead of {@link Token} objects. Literals are sliced from the source
+ * only when {@link #getLiteral(int)} is called, and {@link #matches(int,
+ * String)} compares a literal against the source without creating it. The
+ * {@link Token.Kind} of each token is classified as it is added.
+ *
+ * Buffers created from a list of tokens have no source, and instead keep the
+ * literals of those tokens.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Token.Kind[] KINDS = Token.Kind.values();
+
+    private final CharSequence source;
+    private byte[] types = new byte[16];
+    private byte[] kinds = new byte[16];
+    private int[] indices = new int[16];
+    private int[] lengths = new int[16];
+    private String[] literals = null;
+    private int size = 0;
+
+    public TokenBuffer(CharSequence source) {
+        this.source = source;
+    }
+
+    public static TokenBuffer of(List<Token> tokens) {
+        TokenBuffer buffer = new TokenBuffer(null);
+        for (Token token : tokens) {
+            buffer.add(token);
+        }
+        return buffer;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a token spanning the given range of the source.
+     */
+    public void add(Token.Type type, int index, int length) {
+        if (source == null) {
+            throw new IllegalStateException("A token buffer without a source requires a literal.");
+        }
+        grow();
+        types[size] = (byte) type.ordinal();
+        kinds[size] = (byte) Token.Kind.of(source, index, index + length).ordinal();
+        indices[size] = index;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * Adds a token along with its literal, which is kept by the buffer.
+     */
+    public void add(Token token) {
+        grow();
+        if (literals == null) {
+            literals = new String[types.length];
+        }
+        types[size] = (byte) token.getType().ordinal();
+        kinds[size] = (byte) token.getKind().ordinal();
+        indices[size] = token.getIndex();
+        lengths[size] = token.getLiteral().length();
+        literals[size] = token.getLiteral();
+        size++;
+    }
+
+    public Token.Type getType(int i) {
+        return TYPES[types[Objects.checkIndex(i, size)]];
+    }
+
+    public Token.Kind getKind(int i) {
+        return KINDS[kinds[Objects.checkIndex(i, size)]];
+    }
+
+    public int getIndex(int i) {
+        return indices[Objects.checkIndex(i, size)];
+    }
+
+    public int getLength(int i) {
+        return lengths[Objects.checkIndex(i, size)];
+    }
+
+    /**
+     * Returns the literal of the token, slicing it from the source the first
+     * time it is requested.
+     */
+    public String getLiteral(int i) {
+        Objects.checkIndex(i, size);
+        if (literals == null) {
+            literals = new String[types.length];
+        }
+        if (literals[i] == null) {
+            literals[i] = source.subSequence(indices[i], indices[i] + lengths[i]).toString();
+        }
+        return literals[i];
+    }
+
+    /**
+     * Returns true if the literal of the token is equal to the given literal,
+     * without creating the literal of the token.
+     */
+    public boolean matches(int i, String literal) {
+        Objects.checkIndex(i, size);
+        if (literals != null && literals[i] != null) {
+            return literals[i].equals(literal);
+        } else if (lengths[i] != literal.length()) {
+            return false;
+        }
+        for (int j = 0; j < lengths[i]; j++) {
+            if (source.charAt(indices[i] + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a {@link Token} for the token at the given position.
+     */
+    public Token get(int i) {
+        return new Token(getType(i), getLiteral(i), getIndex(i));
+    }
+
+    /**
+     * Adds the tokens of the other buffer from start to end, shifting their
+     * indices by shift, which is used to splice the unchanged tokens around an
+     * edit into a new buffer.
+     */
+    void addAll(TokenBuffer other, int start, int end, int shift) {
+        for (int i = start; i < end; i++) {
+            grow();
+            types[size] = other.types[i];
+            kinds[size] = other.kinds[i];
+            indices[size] = other.indices[i] + shift;
+            lengths[size] = other.lengths[i];
+            if (other.literals != null && other.literals[i] != null) {
+                if (literals == null) {
+                    literals = new String[types.length];
+                }
+                literals[size] = other.literals[i];
+            }
+            size++;
+        }
+    }
+
+    /**
+     * Removes the first count tokens, which is used to keep only a window of a
+     * stream of tokens.
+     */
+    void removeFirst(int count) {
+        System.arraycopy(types, count, types, 0, size - count);
+        System.arraycopy(kinds, count, kinds, 0, size - count);
+        System.arraycopy(indices, count, indices, 0, size - count);
+        System.arraycopy(lengths, count, lengths, 0, size - count);
+        if (literals != null) {
+            System.arraycopy(literals, count, literals, 0, size - count);
+            Arrays.fill(literals, size - count, size, null);
+        }
+        size -= count;
+    }
+
+    private void grow() {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, 2 * size);
+            kinds = Arrays.copyOf(kinds, 2 * size);
+            indices = Arrays.copyOf(indices, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+            if (literals != null) {
+                literals = Arrays.copyOf(literals, 2 * size);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Tests that sources written by {@link AstWriter} are read back by {@link
+ * AstReader} as equal sources, before and after analysis.
+ */
+public class AstWriterTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testStatement(String test, Ast.Statement statement) {
+        Ast.Source ast = new Ast.Source(Collections.emptyList(), Arrays.asList(
+                new Ast.Function("main", Collections.emptyList(), Arrays.asList(statement))
+        ));
+        Assertions.assertEquals(ast, AstReader.deserialize(AstWriter.serialize(ast)), test);
+    }
+
+    private static Stream<Arguments> testStatement() {
+        return Stream.of(
+                Arguments.of("Expression", new Ast.Statement.Expression(
+                        new Ast.Expression.Function("print", Arrays.asList(new Ast.Expression.Literal("text")))
+                )),
+                Arguments.of("Declaration", new Ast.Statement.Declaration("name", Optional.of("Integer"), Optional.empty())),
+                Arguments.of("Assignment", new Ast.Statement.Assignment(
+                        new Ast.Expression.Access(Optional.of(new Ast.Expression.Literal(BigInteger.ONE)), "list"),
+                        new Ast.Expression.Literal('c')
+                )),
+                Arguments.of("If", new Ast.Statement.If(
+                        new Ast.Expression.Literal(true),
+                        Arrays.asList(new Ast.Statement.Return(new Ast.Expression.Literal(null))),
+                        Arrays.asList(new Ast.Statement.Return(new Ast.Expression.Literal(false)))
+                )),
+                Arguments.of("Switch", new Ast.Statement.Switch(
+                        new Ast.Expression.Access(Optional.empty(), "letter"),
+                        Arrays.asList(
+                                new Ast.Statement.Case(Optional.of(new Ast.Expression.Literal('y')), Collections.emptyList()),
+                                new Ast.Statement.Case(Optional.empty(), Collections.emptyList())
+                        )
+                )),
+                Arguments.of("While", new Ast.Statement.While(
+                        new Ast.Expression.Binary("<",
+                                new Ast.Expression.Access(Optional.empty(), "i"),
+                                new Ast.Expression.Group(new Ast.Expression.Literal(new BigDecimal("-1.50")))
+                        ),
+                        Collections.emptyList()
+                )),
+                Arguments.of("Return", new Ast.Statement.Return(new Ast.Expression.PlcList(Arrays.asList(
+                        new Ast.Expression.Literal(new BigInteger("-123456789012345678901234567890")),
+                        new Ast.Expression.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                        new Ast.Expression.Literal("\u00e9\ud83d\ude00")
+                ))))
+        );
+    }
+
+    @Test
+    void testGlobals() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(
+                new Ast.Global("x", "Integer", true, Optional.of(new Ast.Expression.Literal(BigInteger.ONE))),
+                new Ast.Global("d", "Decimal", false, Optional.empty())
+        ), Collections.emptyList());
+        Assertions.assertEquals(ast, AstReader.deserialize(AstWriter.serialize(ast)));
+    }
+
+    /**
+     * Checks that the types, variables and functions attached by the {@link
+     * Analyzer} are read back, and that a variable is still shared by its
+     * declaration and accesses.
+     */
+    @Test
+    void testAnalyzed() {
+        String input = "VAR x: Integer = 1;\n" +
+                "VAL d: Decimal = 1.5;\n" +
+                "FUN f(n: Integer): Integer DO\n" +
+                "    LET s = \"text\";\n" +
+                "    IF (n > 3) && TRUE DO x = n; ELSE print(s); END\n" +
+                "    SWITCH n CASE 1: print(1); DEFAULT print(2); END\n" +
+                "    WHILE x < 3 DO x = x + 1; END\n" +
+                "    RETURN x;\n" +
+                "END\n" +
+                "FUN main(): Integer DO\n" +
+                "    RETURN f(1);\n" +
+                "END\n";
+        Ast.Source ast = new Parser(new TableLexer(input).lex()).parseSource();
+        new Analyzer(null).visit(ast);
+        Ast.Source read = AstReader.deserialize(AstWriter.serialize(ast));
+        Assertions.assertEquals(ast, read);
+        Ast.Statement.If statement = (Ast.Statement.If) read.getFunctions().get(0).getStatements().get(1);
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ((Ast.Statement.Assignment) statement.getThenStatements().get(0)).getReceiver();
+        Assertions.assertSame(read.getGlobals().get(0).getVariable(), receiver.getVariable());
+    }
+
+    @Test
+    void testInvalid() {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+        Assertions.assertThrows(IOException.class, () -> new AstReader(input).readSource());
+    }
+
+}
@@ -0,0 +1,187 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests for {@link BytecodeGenerator}, which compile analyzed sources to class
+ * files, load them and run their main function.
+ */
+public class BytecodeGeneratorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, int expected) {
+        Assertions.assertEquals(expected, BytecodeGenerator.run(analyze(input)));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Return",
+                        "FUN main(): Integer DO\n    RETURN 100000;\nEND",
+                        100000
+                ),
+                Arguments.of("Globals",
+                        "VAR x: Integer = 2;\n" +
+                        "VAL y: Integer = 3;\n" +
+                        "FUN main(): Integer DO\n    x = x * y;\n    RETURN x - 1;\nEND",
+                        5
+                ),
+                Arguments.of("While",
+                        "FUN main(): Integer DO\n" +
+                        "    LET i = 0;\n" +
+                        "    LET sum = 0;\n" +
+                        "    WHILE i < 10 DO\n" +
+                        "        sum = sum + i;\n" +
+                        "        i = i + 1;\n" +
+                        "    END\n" +
+                        "    RETURN sum;\n" +
+                        "END",
+                        45
+                ),
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO\n" +
+                        "    IF n < 2 DO\n" +
+                        "        RETURN n;\n" +
+                        "    END\n" +
+                        "    RETURN fib(n - 1) + fib(n - 2);\n" +
+                        "END\n" +
+                        "FUN main(): Integer DO\n    RETURN fib(20);\nEND",
+                        6765
+                ),
+                Arguments.of("Decimal Comparison",
+                        "FUN main(): Integer DO\n" +
+                        "    LET x = 1.5 * 3.0;\n" +
+                        "    IF x > 4.4 && x < 5.0 DO\n" +
+                        "        RETURN 1;\n" +
+                        "    ELSE\n" +
+                        "        RETURN 0;\n" +
+                        "    END\n" +
+                        "END",
+                        1
+                ),
+                Arguments.of("String Comparison",
+                        "FUN main(): Integer DO\n" +
+                        "    IF \"abc\" < \"abd\" && TRUE DO\n" +
+                        "        RETURN 1;\n" +
+                        "    END\n" +
+                        "    RETURN 0;\n" +
+                        "END",
+                        1
+                ),
+                Arguments.of("Switch",
+                        "FUN main(): Integer DO\n" +
+                        "    LET c = 'b';\n" +
+                        "    LET result = 0;\n" +
+                        "    SWITCH c\n" +
+                        "        CASE 'b':\n" +
+                        "            result = 2;\n" +
+                        "        DEFAULT\n" +
+                        "            result = 3;\n" +
+                        "    END\n" +
+                        "    RETURN result;\n" +
+                        "END",
+                        2
+                )
+        );
+    }
+
+    /**
+     * Checks that the default case runs when no case matches.
+     */
+    @Test
+    void testSwitchDefault() {
+        String input = "FUN main(): Integer DO\n" +
+                "    LET c = 'a';\n" +
+                "    LET result = 0;\n" +
+                "    SWITCH c CASE 'b': result = 2; DEFAULT result = 3; END\n" +
+                "    RETURN result;\n" +
+                "END";
+        Assertions.assertEquals(3, BytecodeGenerator.run(analyze(input)));
+    }
+
+    /**
+     * Checks switches on ints written as a {@code tableswitch} for dense
+     * cases and as a {@code lookupswitch} for sparse ones, and switches on
+     * strings which still compare each case in order.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSwitchTable(String test, String global, String cases, int expected) {
+        String input = global + "\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET result = 0;\n" +
+                "    SWITCH x " + cases + " END\n" +
+                "    RETURN result;\n" +
+                "END";
+        Assertions.assertEquals(expected, BytecodeGenerator.run(analyze(input)));
+    }
+
+    private static Stream<Arguments> testSwitchTable() {
+        String dense = IntStream.range(0, 300)
+                .mapToObj(i -> "CASE " + i + ": result = " + (2 * i) + ";")
+                .collect(Collectors.joining(" "));
+        String sparse = IntStream.range(0, 100)
+                .mapToObj(i -> "CASE " + (1000 * i) + ": result = " + i + ";")
+                .collect(Collectors.joining(" "));
+        return Stream.of(
+                Arguments.of("Dense", "VAR x: Integer = 150;", dense + " DEFAULT result = 1;", 300),
+                Arguments.of("Dense Default", "VAR x: Integer = 300;", dense + " DEFAULT result = 1;", 1),
+                Arguments.of("Sparse", "VAR x: Integer = 42000;", sparse + " DEFAULT result = 1;", 42),
+                Arguments.of("Sparse Default", "VAR x: Integer = 42001;", sparse + " DEFAULT result = 1;", 1),
+                Arguments.of("Character", "VAR x: Character = 'b';", "CASE 'a': result = 1; CASE 'b': result = 2; DEFAULT result = 3;", 2),
+                Arguments.of("String", "VAR x: String = \"b\";", "CASE \"a\": result = 1; CASE \"b\": result = 2; DEFAULT result = 3;", 2),
+                Arguments.of("Duplicate", "VAR x: Integer = 1;", "CASE 1: result = 1; CASE 1: result = 2; DEFAULT result = 3;", 1),
+                Arguments.of("Default", "VAR x: Integer = 5;", "CASE 1: result = 1; DEFAULT result = 3;", 3)
+        );
+    }
+
+    @Test
+    void testPrint() {
+        String input = "VAL name: String = \"plc\";\n" +
+                "FUN main(): Integer DO\n" +
+                "    print(name + 1);\n" +
+                "    print(2.5);\n" +
+                "    print('c');\n" +
+                "    print(1 < 2);\n" +
+                "    RETURN 0;\n" +
+                "END";
+        Ast.Source ast = analyze(input);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            Assertions.assertEquals(0, BytecodeGenerator.run(ast));
+        } finally {
+            System.setOut(out);
+        }
+        String expected = String.join(System.lineSeparator(), "plc1", "2.5", "c", "true", "");
+        Assertions.assertEquals(expected, output.toString());
+    }
+
+    /**
+     * Checks that the class file is loaded by a fresh loader each time, so
+     * running two programs with a Main class does not conflict.
+     */
+    @Test
+    void testSeparateLoaders() {
+        Assertions.assertEquals(1, BytecodeGenerator.run(analyze("FUN main(): Integer DO\n    RETURN 1;\nEND")));
+        Assertions.assertEquals(2, BytecodeGenerator.run(analyze("FUN main(): Integer DO\n    RETURN 2;\nEND")));
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
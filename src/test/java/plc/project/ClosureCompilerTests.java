@@ -0,0 +1,234 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests for {@link ClosureCompiler} which are not already covered by running
+ * {@link InterpreterTests} through the {@link Interpreter}.
+ */
+public class ClosureCompilerTests {
+
+    /**
+     * Checks that a node compiled once can be executed repeatedly, each time
+     * evaluating the current values of its variables.
+     */
+    @Test
+    void testExecuteTwice() {
+        Ast.Statement.While loop = new Ast.Statement.While(
+                new Ast.Expression.Binary("<",
+                        new Ast.Expression.Access(Optional.empty(), "i"),
+                        new Ast.Expression.Literal(BigInteger.valueOf(5))
+                ),
+                Arrays.asList(new Ast.Statement.Assignment(
+                        new Ast.Expression.Access(Optional.empty(), "i"),
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Access(Optional.empty(), "i"),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        )
+                ))
+        );
+        ClosureCompiler.Node node = new ClosureCompiler().visit(loop);
+        Scope scope = new Scope(null);
+        scope.defineVariable("i", true, Environment.create(BigInteger.ZERO));
+        ClosureCompiler.Frame frame = new ClosureCompiler.Frame(scope);
+        Assertions.assertEquals(Environment.NIL, node.execute(frame));
+        Assertions.assertEquals(BigInteger.valueOf(5), scope.lookupVariable("i").getValue().getValue());
+        scope.lookupVariable("i").setValue(Environment.create(BigInteger.valueOf(3)));
+        node.execute(frame);
+        Assertions.assertEquals(BigInteger.valueOf(5), scope.lookupVariable("i").getValue().getValue());
+        Assertions.assertSame(scope, frame.getScope());
+    }
+
+    @Test
+    void testRecursion() {
+        String input = "FUN fib(n: Integer): Integer DO\n" +
+                "    IF n < 2 DO\n" +
+                "        RETURN n;\n" +
+                "    END\n" +
+                "    RETURN fib(n - 1) + fib(n - 2);\n" +
+                "END\n" +
+                "FUN main(): Integer DO\n" +
+                "    RETURN fib(20);\n" +
+                "END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Scope scope = new Scope(null);
+        new Resolver(scope).visit(ast);
+        Environment.PlcObject result = new ClosureCompiler().visit(ast).execute(new ClosureCompiler.Frame(scope));
+        Assertions.assertEquals(BigInteger.valueOf(6765), result.getValue());
+    }
+
+    /**
+     * Checks that conditions are evaluated once per decision by counting the
+     * calls to a function in them. The else branch is taken after a false
+     * condition without evaluating it again, and a loop evaluates its
+     * condition once per iteration plus once to exit.
+     */
+    @Test
+    void testConditionCalls() {
+        String input = "VAR i: Integer = 0;\n" +
+                "FUN main(): Integer DO\n" +
+                "    IF check(i) DO\n" +
+                "        RETURN 1;\n" +
+                "    ELSE\n" +
+                "        WHILE check(i) DO\n" +
+                "            i = i + 1;\n" +
+                "        END\n" +
+                "    END\n" +
+                "    RETURN i;\n" +
+                "END";
+        int[] calls = {0};
+        Scope scope = new Scope(null);
+        scope.defineFunction("check", 1, args -> {
+            calls[0]++;
+            return Environment.create(calls[0] > 1 && calls[0] < 5);
+        });
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Environment.PlcObject result = new Interpreter(scope).visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(3), result.getValue());
+        Assertions.assertEquals(5, calls[0]);
+    }
+
+    /**
+     * Checks that a loop whose body declares a variable reuses one scope for
+     * all of its iterations, and that a loop whose body declares none runs it
+     * in the enclosing scope, by recording the scope each call is made in.
+     */
+    @Test
+    void testLoopScopes() {
+        String input = "FUN main(): Integer DO\n" +
+                "    LET i = 0;\n" +
+                "    record(i);\n" +
+                "    WHILE i < 3 DO\n" +
+                "        LET y = i + 1;\n" +
+                "        record(y);\n" +
+                "        i = y;\n" +
+                "    END\n" +
+                "    WHILE i < 6 DO\n" +
+                "        record(i);\n" +
+                "        i = i + 1;\n" +
+                "    END\n" +
+                "    RETURN i;\n" +
+                "END";
+        List<Scope> scopes = new ArrayList<>();
+        Scope scope = new Scope(null);
+        ClosureCompiler.Frame frame = new ClosureCompiler.Frame(scope);
+        scope.defineFunction("record", 1, args -> {
+            scopes.add(frame.getScope());
+            return Environment.NIL;
+        });
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Resolver(scope).visit(ast);
+        Environment.PlcObject result = new ClosureCompiler().visit(ast).execute(frame);
+        Assertions.assertEquals(BigInteger.valueOf(6), result.getValue());
+        Assertions.assertEquals(7, scopes.size());
+        Scope body = scopes.get(0);
+        Assertions.assertNotSame(body, scopes.get(1));
+        Assertions.assertSame(body, scopes.get(1).getParent());
+        Assertions.assertSame(scopes.get(1), scopes.get(2));
+        Assertions.assertSame(scopes.get(1), scopes.get(3));
+        for (int i = 4; i < 7; i++) {
+            Assertions.assertSame(body, scopes.get(i));
+        }
+    }
+
+    /**
+     * Measures the bytes allocated by a loop whose condition and body are
+     * made of logical operators and comparisons. After the loop has been
+     * warmed up, each run allocates less than a byte per iteration, so no
+     * object is created for any of the booleans or small integers.
+     */
+    @Test
+    void testConditionAllocation() {
+        String input = "VAR i: Integer = 0;\n" +
+                "VAR count: Integer = 0;\n" +
+                "FUN main(): Integer DO\n" +
+                "    WHILE i < 1000 && (0 < 1 && TRUE) DO\n" +
+                "        IF (i < 501 && 0 < i) && i > 100 DO\n" +
+                "            count = count + 1;\n" +
+                "        END\n" +
+                "        i = i + 1;\n" +
+                "    END\n" +
+                "    RETURN count;\n" +
+                "END";
+        Scope scope = new Scope(null);
+        Ast.Source ast = new Parser(new TableLexer(input).lex()).parseSource();
+        new Resolver(scope).visit(ast);
+        ClosureCompiler compiler = new ClosureCompiler();
+        ClosureCompiler.Node loop = compiler.visit(ast.getFunctions().get(0).getStatements().get(0));
+        ClosureCompiler.Frame frame = new ClosureCompiler.Frame(scope);
+        compiler.visit(ast.getGlobals().get(0)).execute(frame);
+        compiler.visit(ast.getGlobals().get(1)).execute(frame);
+        Environment.Variable i = scope.lookupVariable("i");
+        Environment.Variable count = scope.lookupVariable("count");
+        for (int run = 0; run < 200; run++) {
+            i.setValue(Environment.createInteger(0));
+            count.setValue(Environment.createInteger(0));
+            loop.execute(frame);
+        }
+        Assertions.assertEquals(BigInteger.valueOf(400), count.getValue().getValue());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int runs = 100;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int run = 0; run < runs; run++) {
+            i.setValue(Environment.createInteger(0));
+            count.setValue(Environment.createInteger(0));
+            loop.execute(frame);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        Assertions.assertTrue(allocated < runs * 1000, allocated + " bytes allocated for " + (runs * 1000) + " iterations");
+    }
+
+    /**
+     * Checks that a switch runs only the first case equal to its condition,
+     * or the default case, whether it is dispatched through an array, a hash
+     * map or by evaluating its case values.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSwitch(String test, String global, String cases, int expected) {
+        String input = global + "\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET result = 0;\n" +
+                "    SWITCH x " + cases + " END\n" +
+                "    RETURN result;\n" +
+                "END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Environment.PlcObject result = new Interpreter(new Scope(null)).visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(expected), result.getValue());
+    }
+
+    private static Stream<Arguments> testSwitch() {
+        String dense = IntStream.range(0, 300)
+                .mapToObj(i -> "CASE " + i + ": result = " + (2 * i) + ";")
+                .collect(Collectors.joining(" "));
+        String sparse = IntStream.range(0, 100)
+                .mapToObj(i -> "CASE " + (1000 * i) + ": result = " + i + ";")
+                .collect(Collectors.joining(" "));
+        return Stream.of(
+                Arguments.of("Dense", "VAR x: Integer = 150;", dense + " DEFAULT result = 1;", 300),
+                Arguments.of("Dense Default", "VAR x: Integer = 300;", dense + " DEFAULT result = 1;", 1),
+                Arguments.of("Sparse", "VAR x: Integer = 42000;", sparse + " DEFAULT result = 1;", 42),
+                Arguments.of("Sparse Default", "VAR x: Integer = 42001;", sparse + " DEFAULT result = 1;", 1),
+                Arguments.of("Character", "VAR x: Character = 'b';", "CASE 'a': result = 1; CASE 'b': result = 2; DEFAULT result = 3;", 2),
+                Arguments.of("String", "VAR x: String = \"b\";", "CASE \"a\": result = 1; CASE \"b\": result = 2; DEFAULT result = 3;", 2),
+                Arguments.of("Duplicate", "VAR x: Integer = 1;", "CASE 1: result = 1; CASE 1: result = 2; DEFAULT result = 3;", 1),
+                Arguments.of("Not Literal", "VAR x: Integer = 2;\nVAR y: Integer = 2;", "CASE 1: result = 1; CASE y: result = 2; DEFAULT result = 3;", 2),
+                Arguments.of("Default", "VAR x: Integer = 5;", "CASE 1: result = 1; DEFAULT result = 3;", 3)
+        );
+    }
+
+}
@@ -0,0 +1,118 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests that edits through {@link IncrementalParser} give the same tokens and
+ * source as parsing the edited text from scratch, and that the subtrees of
+ * items outside of the edit are reused.
+ */
+public class IncrementalParserTests {
+
+    private static final String INPUT = "VAR x: Integer = 1;\n" +
+            "LIST nums: Integer = [1, 2];\n" +
+            "FUN first(): Integer DO\n" +
+            "    IF x < 2 DO\n" +
+            "        x = x + 1;\n" +
+            "    END\n" +
+            "    RETURN x;\n" +
+            "END\n" +
+            "FUN second() DO\n" +
+            "    print(\"second\");\n" +
+            "END\n";
+
+    @ParameterizedTest
+    @MethodSource
+    void testEdit(String test, String target, String replacement, int reused) {
+        IncrementalParser parser = IncrementalParser.parse(INPUT);
+        int offset = INPUT.indexOf(target);
+        IncrementalParser edited = parser.edit(offset, target.length(), replacement);
+        String input = INPUT.substring(0, offset) + replacement + INPUT.substring(offset + target.length());
+        Assertions.assertEquals(new TableLexer(input).lex(), tokens(edited.getTokens()), test);
+        Assertions.assertEquals(new Parser(new TableLexer(input).lex()).parseSource(), edited.getSource(), test);
+        Assertions.assertEquals(reused, count(parser.getSource(), edited.getSource()), test);
+    }
+
+    private static Stream<Arguments> testEdit() {
+        return Stream.of(
+                Arguments.of("Function Body", "x + 1", "x + 10", 3),
+                Arguments.of("Insert Statement", "    RETURN x;", "    print(x);\n    RETURN x;", 3),
+                Arguments.of("Global Value", "= 1;", "= 42;", 3),
+                Arguments.of("Last Function", "\"second\"", "\"changed\"", 3),
+                Arguments.of("Trailing Whitespace", "END\n", "END\n\n\n", 3),
+                Arguments.of("Rename Function", "second", "third", 3),
+                Arguments.of("Across Items", "1;\nLIST nums", "2;\nLIST values", 0),
+                Arguments.of("Adjacent Items", "1;\nLIST", "1;LIST", 0),
+                Arguments.of("Split Function", "    RETURN x;\n", "    RETURN x;\nEND\nFUN third() DO\n", 0),
+                Arguments.of("Global To Function", "LIST nums: Integer = [1, 2];", "FUN nums() DO END", 0)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testInvalid(String test, String target, String replacement) {
+        IncrementalParser parser = IncrementalParser.parse(INPUT);
+        int offset = INPUT.indexOf(target);
+        String input = INPUT.substring(0, offset) + replacement + INPUT.substring(offset + target.length());
+        ParseException expected = Assertions.assertThrows(ParseException.class,
+                () -> new Parser(new TableLexer(input).lexBuffer()).parseSource());
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> parser.edit(offset, target.length(), replacement));
+        Assertions.assertEquals(expected.getMessage(), exception.getMessage(), test);
+        Assertions.assertEquals(expected.getIndex(), exception.getIndex(), test);
+    }
+
+    private static Stream<Arguments> testInvalid() {
+        return Stream.of(
+                Arguments.of("Missing Expression", "x + 1", "x +"),
+                Arguments.of("Unterminated String", "\"second\"", "\"second"),
+                Arguments.of("Global After Function", "FUN second() DO", "VAR y: Integer;\nFUN second() DO")
+        );
+    }
+
+    @Test
+    void testSequence() {
+        IncrementalParser parser = IncrementalParser.parse(INPUT);
+        String input = INPUT;
+        String[][] edits = {{"x + 1", "x + 2"}, {"\"second\"", "x"}, {"= 1;", "= 3;"}, {"x + 2", "x * 2"}};
+        for (String[] edit : edits) {
+            int offset = input.indexOf(edit[0]);
+            parser = parser.edit(offset, edit[0].length(), edit[1]);
+            input = input.substring(0, offset) + edit[1] + input.substring(offset + edit[0].length());
+            Assertions.assertEquals(new TableLexer(input).lex(), tokens(parser.getTokens()));
+            Assertions.assertEquals(new Parser(new TableLexer(input).lex()).parseSource(), parser.getSource());
+        }
+    }
+
+    private static List<Token> tokens(TokenBuffer buffer) {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.get(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Counts the globals and functions of the edited source which are the
+     * same instances as in the original source.
+     */
+    private static int count(Ast.Source original, Ast.Source edited) {
+        int count = 0;
+        for (Ast.Global global : edited.getGlobals()) {
+            count += original.getGlobals().stream().anyMatch(g -> g == global) ? 1 : 0;
+        }
+        for (Ast.Function function : edited.getFunctions()) {
+            count += original.getFunctions().stream().anyMatch(f -> f == function) ? 1 : 0;
+        }
+        return count;
+    }
+
+}
@@ -370,6 +370,70 @@ final class InterpreterTests {
                                 new Ast.Expression.Literal(new BigDecimal("3.4"))
                         ),
                         new BigDecimal("0.4")
+                ),
+                // 9223372036854775807 + 1
+                Arguments.of("Addition Overflow",
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Literal(BigInteger.valueOf(Long.MAX_VALUE)),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        ),
+                        BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)
+                ),
+                // -9223372036854775808 - 1
+                Arguments.of("Subtraction Overflow",
+                        new Ast.Expression.Binary("-",
+                                new Ast.Expression.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE)
+                ),
+                // 4294967296 * 4294967296
+                Arguments.of("Multiplication Overflow",
+                        new Ast.Expression.Binary("*",
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(32)),
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(32))
+                        ),
+                        BigInteger.ONE.shiftLeft(64)
+                ),
+                // -9223372036854775808 / -1
+                Arguments.of("Division Overflow",
+                        new Ast.Expression.Binary("/",
+                                new Ast.Expression.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                new Ast.Expression.Literal(BigInteger.valueOf(-1))
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE).negate()
+                ),
+                // -7 / 2
+                Arguments.of("Integer Division",
+                        new Ast.Expression.Binary("/",
+                                new Ast.Expression.Literal(BigInteger.valueOf(-7)),
+                                new Ast.Expression.Literal(BigInteger.valueOf(2))
+                        ),
+                        BigInteger.valueOf(-3)
+                ),
+                // 18446744073709551616 > 1
+                Arguments.of("Large Comparison",
+                        new Ast.Expression.Binary(">",
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(64)),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        ),
+                        true
+                ),
+                // 1 < 18446744073709551616
+                Arguments.of("Mixed Comparison",
+                        new Ast.Expression.Binary("<",
+                                new Ast.Expression.Literal(BigInteger.ONE),
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(64))
+                        ),
+                        true
+                ),
+                // 1 + 1.0
+                Arguments.of("Integer Decimal Addition",
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Literal(BigInteger.ONE),
+                                new Ast.Expression.Literal(BigDecimal.ONE)
+                        ),
+                        null
                 )
         );
     }
@@ -439,6 +503,101 @@ final class InterpreterTests {
         test(ast, expected, new Scope(null));
     }
 
+    @Test
+    void testResolvedScopes() {
+        String input = "VAR x: Integer = 1;\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET y = x + z;\n" +
+                "    IF TRUE DO\n" +
+                "        LET x = 10;\n" +
+                "        y = y + x;\n" +
+                "    END\n" +
+                "    LET i = 0;\n" +
+                "    WHILE i < 3 DO\n" +
+                "        LET x = i;\n" +
+                "        y = y + x;\n" +
+                "        i = i + 1;\n" +
+                "    END\n" +
+                "    RETURN y + x;\n" +
+                "END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Scope scope = new Scope(null);
+        scope.defineVariable("z", true, Environment.create(BigInteger.valueOf(100)));
+        test(ast, BigInteger.valueOf(115), scope);
+        Ast.Statement.Return ret = (Ast.Statement.Return) ast.getFunctions().get(0).getStatements().get(4);
+        Ast.Expression.Access x = (Ast.Expression.Access) ((Ast.Expression.Binary) ret.getValue()).getRight();
+        Assertions.assertEquals(1, x.getDepth());
+        Assertions.assertEquals(0, x.getSlot());
+        Ast.Statement.Declaration y = (Ast.Statement.Declaration) ast.getFunctions().get(0).getStatements().get(0);
+        Ast.Expression.Access z = (Ast.Expression.Access) ((Ast.Expression.Binary) y.getValue().get()).getRight();
+        Assertions.assertEquals(-1, z.getSlot());
+    }
+
+    @Test
+    void testFunctionHandle() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", 1, args -> Environment.create("global"));
+        Scope inner = new Scope(new Scope(global));
+        Scope.FunctionHandle handle = inner.resolveFunction("f", 1);
+        Assertions.assertSame(global, handle.getOwner());
+        Assertions.assertSame(global.lookupFunction("f", 1), handle.getFunction());
+        Assertions.assertTrue(handle.isValid(inner));
+        inner.getParent().defineFunction("f", 2, args -> Environment.NIL);
+        Assertions.assertTrue(handle.isValid(inner));
+        inner.getParent().defineFunction("f", 1, args -> Environment.create("shadowed"));
+        Assertions.assertFalse(handle.isValid(inner));
+        Assertions.assertTrue(handle.isValid(global));
+        Assertions.assertFalse(handle.isValid(new Scope(null)));
+        Assertions.assertThrows(RuntimeException.class, () -> inner.resolveFunction("f", 3));
+    }
+
+    @Test
+    void testFunctionCache() {
+        Ast.Expression.Function ast = new Ast.Expression.Function("f", Arrays.asList(
+                new Ast.Expression.Literal(BigInteger.ONE)
+        ));
+        Scope first = new Scope(null);
+        first.defineFunction("f", 1, args -> Environment.create("first"));
+        test(ast, "first", first);
+        Assertions.assertSame(first, ast.getHandle().getOwner());
+        test(ast, "first", first);
+        Scope second = new Scope(null);
+        second.defineFunction("f", 1, args -> Environment.create("second"));
+        test(ast, "second", second);
+        Assertions.assertSame(second, ast.getHandle().getOwner());
+    }
+
+    @Test
+    void testNestedReturn() {
+        String input = "FUN count(n: Integer): Integer DO\n" +
+                "    WHILE TRUE DO\n" +
+                "        IF n < 1 DO\n" +
+                "            RETURN 0;\n" +
+                "        END\n" +
+                "        RETURN count(n - 1) + 1;\n" +
+                "    END\n" +
+                "    RETURN 0 - 1;\n" +
+                "END\n" +
+                "FUN main(): Integer DO\n" +
+                "    RETURN count(100);\n" +
+                "END";
+        test(new Parser(new Lexer(input).lex()).parseSource(), BigInteger.valueOf(100), new Scope(null));
+    }
+
+    @Test
+    void testValueCache() {
+        Assertions.assertSame(Environment.create(true), new Interpreter(new Scope(null)).visit(
+                new Ast.Expression.Binary("<", new Ast.Expression.Literal(BigInteger.ONE), new Ast.Expression.Literal(BigInteger.TEN))));
+        Assertions.assertSame(Environment.create(BigInteger.valueOf(1023)), Environment.createInteger(1023));
+        Assertions.assertSame(Environment.create(BigInteger.valueOf(-128)), Environment.create(BigInteger.valueOf(-128)));
+        Assertions.assertSame(Environment.create('y'), Environment.create('y'));
+        Assertions.assertSame(Environment.create(Environment.NIL.getValue()), Environment.create(Environment.NIL.getValue()));
+        Assertions.assertNotEquals(Environment.create(BigInteger.valueOf(1024)), Environment.create(BigInteger.valueOf(1024)));
+        Assertions.assertEquals(BigInteger.valueOf(1024), Environment.create(BigInteger.valueOf(1024)).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(-129), Environment.createInteger(-129).getValue());
+        Assertions.assertEquals('\u00E9', Environment.create('\u00E9').getValue());
+    }
+
     private static Scope test(Ast ast, Object expected, Scope scope) {
         Interpreter interpreter = new Interpreter(scope);
         if (expected != null) {
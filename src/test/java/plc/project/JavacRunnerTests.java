@@ -0,0 +1,97 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JavacRunner}, which compile the output of {@link Generator}
+ * in memory and run it.
+ */
+public class JavacRunnerTests {
+
+    @Test
+    void testRun() {
+        String input = "VAR x: Integer = 20;\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET y = x * 2;\n" +
+                "    RETURN y + 2;\n" +
+                "END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertEquals(42, new JavacRunner().run(ast));
+    }
+
+    /**
+     * Checks that a switch with many cases, a repeated case and cases
+     * declaring the same variable still compiles and runs.
+     */
+    @Test
+    void testSwitch() {
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            cases.append("CASE ").append(i).append(": LET y = ").append(i).append("; result = y * 2; ");
+        }
+        String input = "VAR x: Integer = 150;\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET result = 0;\n" +
+                "    SWITCH x " + cases + "CASE 150: result = 1; DEFAULT result = 2; END\n" +
+                "    RETURN result;\n" +
+                "END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertEquals(300, new JavacRunner().run(ast));
+    }
+
+    /**
+     * Checks that submitting the same source again skips compilation, while
+     * a different source is compiled.
+     */
+    @Test
+    void testCache() {
+        JavacRunner runner = new JavacRunner();
+        String source = "public class Main {\n    int main() {\n        return 1;\n    }\n}";
+        Assertions.assertEquals(1, runner.run(source));
+        Assertions.assertEquals(1, runner.run(source));
+        Assertions.assertEquals(1, runner.getCompilations());
+        Assertions.assertSame(runner.compile(source), runner.compile(source));
+        Assertions.assertEquals(2, runner.run(source.replace("return 1", "return 2")));
+        Assertions.assertEquals(2, runner.getCompilations());
+    }
+
+    /**
+     * Checks that running an AST again finds it in the cache without
+     * compiling it, and that the least recently used program is evicted once
+     * the cache is full.
+     */
+    @Test
+    void testCacheEviction() {
+        JavacRunner runner = new JavacRunner(2);
+        Ast.Source one = analyze("FUN main(): Integer DO\n    RETURN 1;\nEND");
+        Ast.Source two = analyze("FUN main(): Integer DO\n    RETURN 2;\nEND");
+        Assertions.assertEquals(1, runner.run(one));
+        Assertions.assertEquals(1, runner.run(one));
+        Assertions.assertEquals(1, runner.getCompilations());
+        Assertions.assertEquals(2, runner.run(two));
+        Assertions.assertEquals(2, runner.getCompilations());
+        Assertions.assertEquals(1, runner.run(one));
+        Assertions.assertEquals(3, runner.getCompilations());
+    }
+
+    @Test
+    void testCompilationError() {
+        JavacRunner runner = new JavacRunner();
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> runner.run("public class Main {\n    int main() {\n        return;\n    }\n}"));
+        Assertions.assertTrue(exception.getMessage().contains("line 3"), exception.getMessage());
+        Assertions.assertThrows(RuntimeException.class,
+                () -> runner.run("public class Main {\n    int main() {\n        return;\n    }\n}"));
+        Assertions.assertEquals(2, runner.getCompilations());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
@@ -0,0 +1,165 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests that the {@link Optimizer} folds constants and prunes dead branches
+ * of analyzed sources without changing what they evaluate to.
+ */
+public class OptimizerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testExpression(String test, String input, Object expected) {
+        Ast.Source ast = analyze("VAR g: Integer = 1;\nFUN main(): Integer DO\n    LET x = " + input + ";\n    RETURN 0;\nEND");
+        Ast.Expression before = value(ast);
+        Ast.Expression after = value(Optimizer.optimize(ast));
+        if (expected == null) {
+            Assertions.assertSame(before, after);
+        } else {
+            Ast.Expression.Literal literal = new Ast.Expression.Literal(expected);
+            literal.setType(before.getType());
+            Assertions.assertEquals(literal, after);
+        }
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer", "1 + 2 * 3", BigInteger.valueOf(7)),
+                Arguments.of("Group", "(1 + 2) * 3", BigInteger.valueOf(9)),
+                Arguments.of("Decimal", "1.5 * 2.0", new BigDecimal("3.00")),
+                Arguments.of("Concatenation", "\"a\" + \"b\" + 1", "ab1"),
+                Arguments.of("Comparison", "1 < 2 && 'a' > 'b'", false),
+                Arguments.of("Short Circuit", "FALSE && 1 < g", false),
+                Arguments.of("Overflow", "2147483647 + 1", null),
+                Arguments.of("Access", "1 + g", null),
+                Arguments.of("Equality", "(1 + 1) == 2", null)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testDivision(String test, Object left, Object right, Object expected) {
+        Ast.Expression.Binary ast = new Ast.Expression.Binary("/",
+                new Ast.Expression.Literal(left),
+                new Ast.Expression.Literal(right)
+        );
+        Ast.Expression result = (Ast.Expression) new Optimizer().visit(ast);
+        Assertions.assertEquals(expected == null ? ast : new Ast.Expression.Literal(expected), result, test);
+    }
+
+    private static Stream<Arguments> testDivision() {
+        return Stream.of(
+                Arguments.of("Integer", BigInteger.valueOf(7), BigInteger.valueOf(2), BigInteger.valueOf(3)),
+                Arguments.of("Decimal", new BigDecimal("1.0"), new BigDecimal("3.0"), new BigDecimal("0.3")),
+                Arguments.of("Half Even", new BigDecimal("0.5"), new BigDecimal("2.0"), new BigDecimal("0.2")),
+                Arguments.of("Integer By Zero", BigInteger.ONE, BigInteger.ZERO, null),
+                Arguments.of("Decimal By Zero", BigDecimal.ONE, new BigDecimal("0.0"), null)
+        );
+    }
+
+    @Test
+    void testPruneIf() {
+        Ast.Source ast = Optimizer.optimize(analyze("FUN main(): Integer DO\n" +
+                "    IF 1 < 2 DO print(1); ELSE print(2); END\n" +
+                "    IF FALSE DO print(3); ELSE LET y = 4; END\n" +
+                "    WHILE 2 < 1 DO print(5); END\n" +
+                "    RETURN 0;\n" +
+                "END"));
+        List<Ast.Statement> statements = ast.getFunctions().get(0).getStatements();
+        Assertions.assertEquals(3, statements.size());
+        Assertions.assertTrue(statements.get(0) instanceof Ast.Statement.Expression);
+        Ast.Statement.If block = (Ast.Statement.If) statements.get(1);
+        Assertions.assertEquals(Boolean.TRUE, ((Ast.Expression.Literal) block.getCondition()).getLiteral());
+        Assertions.assertTrue(block.getThenStatements().get(0) instanceof Ast.Statement.Declaration);
+        Assertions.assertEquals(Collections.emptyList(), block.getElseStatements());
+    }
+
+    @Test
+    void testPruneSwitch() {
+        Ast.Source ast = Optimizer.optimize(analyze("FUN main(): Integer DO\n" +
+                "    SWITCH 'b' CASE 'a': print(1); DEFAULT print(2); END\n" +
+                "    RETURN 0;\n" +
+                "END"));
+        Ast.Statement.Expression statement = (Ast.Statement.Expression) ast.getFunctions().get(0).getStatements().get(0);
+        Ast.Expression.Function function = (Ast.Expression.Function) statement.getExpression();
+        Assertions.assertEquals(Arrays.asList(literal(BigInteger.valueOf(2))), function.getArguments());
+    }
+
+    /**
+     * Checks that a branch which returns is kept as a block rather than
+     * spliced, since the statements after it would be unreachable in the
+     * generated Java source.
+     */
+    @Test
+    void testPruneReturn() {
+        Ast.Source ast = Optimizer.optimize(analyze("FUN main(): Integer DO\n" +
+                "    IF TRUE DO RETURN 1; END\n" +
+                "    RETURN 2;\n" +
+                "END"));
+        List<Ast.Statement> statements = ast.getFunctions().get(0).getStatements();
+        Assertions.assertEquals(2, statements.size());
+        Assertions.assertTrue(statements.get(0) instanceof Ast.Statement.If);
+        Assertions.assertEquals(1, new JavacRunner().run(ast));
+    }
+
+    /**
+     * Checks that the optimized source is generated and runs with the same
+     * result as the source interpreted without optimizing.
+     */
+    @Test
+    void testRun() {
+        String input = "VAR total: Integer = 2 * 3;\n" +
+                "FUN main(): Integer DO\n" +
+                "    IF (total > 1 + 2) && TRUE DO total = total + 10 * 2; ELSE total = 0; END\n" +
+                "    WHILE FALSE DO total = 0; END\n" +
+                "    RETURN total;\n" +
+                "END";
+        Assertions.assertEquals(26, new JavacRunner().run(analyze(input)));
+        Scope scope = new Scope(null);
+        Ast.Source ast = new Parser(new TableLexer(input).lex()).parseSource();
+        Assertions.assertEquals(BigInteger.valueOf(26), new Interpreter(scope).visit(ast).getValue());
+    }
+
+    /**
+     * Checks that equality still compares its operands as written when the
+     * source is interpreted, rather than the values they fold to.
+     */
+    @Test
+    void testEquality() {
+        String input = "FUN main(): Integer DO\n" +
+                "    IF (1 + 1) == 2 DO RETURN 1; END\n" +
+                "    RETURN 0;\n" +
+                "END";
+        Ast.Source ast = new Parser(new TableLexer(input).lex()).parseSource();
+        Assertions.assertEquals(BigInteger.ZERO, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new TableLexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+    private static Ast.Expression value(Ast.Source ast) {
+        return ((Ast.Statement.Declaration) ast.getFunctions().get(0).getStatements().get(0)).getValue().get();
+    }
+
+    private static Ast.Expression.Literal literal(Object value) {
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(value);
+        literal.setType(Environment.Type.INTEGER);
+        return literal;
+    }
+
+}
@@ -6,12 +6,16 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -369,6 +373,60 @@ final class ParserTests {
                                 new Ast.Expression.Access(Optional.empty(), "expr1"),
                                 new Ast.Expression.Access(Optional.empty(), "expr2")
                         )
+                ),
+                Arguments.of("Binary Precedence",
+                        Arrays.asList(
+                                //a && b < c + d || e
+                                new Token(Token.Type.IDENTIFIER, "a", 0),
+                                new Token(Token.Type.OPERATOR, "&&", 2),
+                                new Token(Token.Type.IDENTIFIER, "b", 5),
+                                new Token(Token.Type.OPERATOR, "<", 7),
+                                new Token(Token.Type.IDENTIFIER, "c", 9),
+                                new Token(Token.Type.OPERATOR, "+", 11),
+                                new Token(Token.Type.IDENTIFIER, "d", 13),
+                                new Token(Token.Type.OPERATOR, "||", 15),
+                                new Token(Token.Type.IDENTIFIER, "e", 18)
+                        ),
+                        new Ast.Expression.Binary("||",
+                                new Ast.Expression.Binary("&&",
+                                        new Ast.Expression.Access(Optional.empty(), "a"),
+                                        new Ast.Expression.Binary("<",
+                                                new Ast.Expression.Access(Optional.empty(), "b"),
+                                                new Ast.Expression.Binary("+",
+                                                        new Ast.Expression.Access(Optional.empty(), "c"),
+                                                        new Ast.Expression.Access(Optional.empty(), "d")
+                                                )
+                                        )
+                                ),
+                                new Ast.Expression.Access(Optional.empty(), "e")
+                        )
+                ),
+                Arguments.of("Binary Associativity",
+                        Arrays.asList(
+                                //a + b + c * d - e
+                                new Token(Token.Type.IDENTIFIER, "a", 0),
+                                new Token(Token.Type.OPERATOR, "+", 2),
+                                new Token(Token.Type.IDENTIFIER, "b", 4),
+                                new Token(Token.Type.OPERATOR, "+", 6),
+                                new Token(Token.Type.IDENTIFIER, "c", 8),
+                                new Token(Token.Type.OPERATOR, "*", 10),
+                                new Token(Token.Type.IDENTIFIER, "d", 12),
+                                new Token(Token.Type.OPERATOR, "-", 14),
+                                new Token(Token.Type.IDENTIFIER, "e", 16)
+                        ),
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Binary("+",
+                                        new Ast.Expression.Access(Optional.empty(), "a"),
+                                        new Ast.Expression.Access(Optional.empty(), "b")
+                                ),
+                                new Ast.Expression.Binary("*",
+                                        new Ast.Expression.Access(Optional.empty(), "c"),
+                                        new Ast.Expression.Binary("-",
+                                                new Ast.Expression.Access(Optional.empty(), "d"),
+                                                new Ast.Expression.Access(Optional.empty(), "e")
+                                        )
+                                )
+                        )
                 )
         );
     }
@@ -515,6 +573,97 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @Test
+    void testStreaming() {
+        String input = "VAR first: Integer = 1;\n" +
+                "FUN main(): Integer DO\n" +
+                "    WHILE first != 10 DO\n" +
+                "        print(first);\n" +
+                "        first = first + 1;\n" +
+                "    END\n" +
+                "END";
+        Ast.Source expected = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(expected, new Parser(new TableLexer(new StringReader(input))).parseSource());
+    }
+
+    @Test
+    void testTokenBuffer() {
+        String input = "LIST nums: Integer = [1, 2];\n" +
+                "FUN main(): Integer DO\n" +
+                "    IF nums[0] < 2 && TRUE DO\n" +
+                "        print(\"small\");\n" +
+                "    END\n" +
+                "    RETURN 0;\n" +
+                "END";
+        Ast.Source expected = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(expected, new Parser(new TableLexer(input).lexBuffer()).parseSource());
+    }
+
+    @Test
+    void testRecovery() {
+        String input = "VAL x: Integer = ;\n" +
+                "FUN main(): Integer DO\n" +
+                "    LET y = ;\n" +
+                "    print(1);\n" +
+                "    y = (2;\n" +
+                "    RETURN 0;\n" +
+                "END\n" +
+                ") FUN other() DO\n" +
+                "    print(2);\n" +
+                "END";
+        List<ParseException> diagnostics = new ArrayList<>();
+        Ast.Source source = new Parser(new TableLexer(input).lex()).parseSource(diagnostics);
+        Ast.Source expected = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Function("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                        new Ast.Statement.Expression(new Ast.Expression.Function("print", Arrays.asList(
+                                new Ast.Expression.Literal(BigInteger.ONE)))),
+                        new Ast.Statement.Return(new Ast.Expression.Literal(BigInteger.ZERO))
+                )),
+                new Ast.Function("other", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList(
+                        new Ast.Statement.Expression(new Ast.Expression.Function("print", Arrays.asList(
+                                new Ast.Expression.Literal(BigInteger.valueOf(2)))))
+                ))
+        ));
+        Assertions.assertEquals(expected, source);
+        Assertions.assertEquals(Arrays.asList(17, 54, 80, 100),
+                diagnostics.stream().map(ParseException::getIndex).collect(Collectors.toList()));
+        for (ParseException diagnostic : diagnostics) {
+            Assertions.assertEquals(0, diagnostic.getStackTrace().length);
+        }
+        Assertions.assertThrows(ParseException.class, () -> new Parser(new TableLexer(input).lex()).parseSource());
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder builder = new StringBuilder("VAR total: Integer = 0;\nLIST nums: Integer = [1, 2];\n");
+        for (int i = 0; i < 200; i++) {
+            builder.append("FUN f").append(i).append("(x: Integer): Integer DO\n")
+                    .append("    IF x < ").append(i).append(" DO\n")
+                    .append("        WHILE x != 0 DO x = x - 1; END\n")
+                    .append("    ELSE\n")
+                    .append("        SWITCH x CASE 1: print(x); DEFAULT total = total + x; END\n")
+                    .append("    END\n")
+                    .append("    RETURN f").append(i).append("(x * 2);\n")
+                    .append("END\n");
+        }
+        String input = builder.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Ast.Source expected = new Parser(new TableLexer(input).lexBuffer()).parseSource();
+            Assertions.assertEquals(expected, new Parser(new TableLexer(input).lexBuffer()).parseSource(pool));
+            for (String invalid : Arrays.asList(input.replace("RETURN f150", "RETURN ;"), input + "x;", "FUN f() DO END VAR x: Integer;")) {
+                ParseException exception = Assertions.assertThrows(ParseException.class,
+                        () -> new Parser(new TableLexer(invalid).lexBuffer()).parseSource());
+                ParseException parallel = Assertions.assertThrows(ParseException.class,
+                        () -> new Parser(new TableLexer(invalid).lexBuffer()).parseSource(pool));
+                Assertions.assertEquals(exception.getMessage(), parallel.getMessage());
+                Assertions.assertEquals(exception.getIndex(), parallel.getIndex());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
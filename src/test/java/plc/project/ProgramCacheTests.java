@@ -0,0 +1,83 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests for {@link ProgramCache}, each using its own temporary directory.
+ */
+public class ProgramCacheTests {
+
+    private static final String SOURCE = "FUN main(): Integer DO\n    RETURN 7;\nEND";
+
+    @Test
+    void testRun() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            ProgramCache cache = new ProgramCache(directory, 1 << 20);
+            Assertions.assertNull(cache.get(SOURCE));
+            Assertions.assertEquals(7, cache.run(SOURCE));
+            byte[] bytes = cache.get(SOURCE);
+            Assertions.assertNotNull(bytes);
+            Assertions.assertEquals(7, new ProgramCache(directory, 1 << 20).run(SOURCE));
+            Assertions.assertArrayEquals(bytes, new ProgramCache(directory, 1 << 20).get(SOURCE));
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(1, files.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Checks that the cached class file is used without parsing the source
+     * again, by caching a class file which returns a different value.
+     */
+    @Test
+    void testHit() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            ProgramCache cache = new ProgramCache(directory, 1 << 20);
+            String other = "FUN main(): Integer DO\n    RETURN 8;\nEND";
+            cache.run(other);
+            cache.put(SOURCE, cache.get(other));
+            Assertions.assertEquals(8, cache.run(SOURCE));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            ProgramCache cache = new ProgramCache(directory, 25);
+            cache.put("a", new byte[10]);
+            cache.put("b", new byte[10]);
+            Assertions.assertNotNull(cache.get("a"));
+            cache.put("c", new byte[10]);
+            Assertions.assertNotNull(cache.get("a"));
+            Assertions.assertNull(cache.get("b"));
+            Assertions.assertNotNull(cache.get("c"));
+            cache.put("d", new byte[30]);
+            Assertions.assertNull(cache.get("a"));
+            Assertions.assertNull(cache.get("c"));
+            Assertions.assertNull(cache.get("d"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
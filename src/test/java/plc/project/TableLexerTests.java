@@ -0,0 +1,182 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Differential tests checking that {@link TableLexer} produces exactly the same
+ * tokens and {@link ParseException} indices as {@link Lexer}.
+ */
+public class TableLexerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testToken(String test, String input) {
+        compare(input, () -> new Lexer(input).lexToken(), () -> new TableLexer(input).lexToken());
+    }
+
+    private static Stream<Arguments> testToken() {
+        return Stream.of(
+                Arguments.of("Identifier", "getName"),
+                Arguments.of("Hyphenated Identifier", "fish-type"),
+                Arguments.of("At Identifier", "@league27"),
+                Arguments.of("Integer", "12345"),
+                Arguments.of("Negative Integer", "-1"),
+                Arguments.of("Leading Zero", "01"),
+                Arguments.of("Decimal", "123.456"),
+                Arguments.of("Trailing Decimal", "1."),
+                Arguments.of("Double Decimal", "1.2.3"),
+                Arguments.of("Zero Decimal", "0.0"),
+                Arguments.of("Hyphen", "-five"),
+                Arguments.of("Pipe", "|"),
+                Arguments.of("Character", "'c'"),
+                Arguments.of("Character Escape", "'\\n'"),
+                Arguments.of("Empty Character", "''"),
+                Arguments.of("Multiple Character", "'abc'"),
+                Arguments.of("Unterminated Character", "'\\n"),
+                Arguments.of("Invalid Character Escape", "'\\c'"),
+                Arguments.of("Character Newline", "'\n'"),
+                Arguments.of("String", "\"abc\""),
+                Arguments.of("Empty String", "\"\""),
+                Arguments.of("String Escape", "\"Hello,\\nWorld\""),
+                Arguments.of("Escaped Quote", "\"\\\"\""),
+                Arguments.of("Unterminated String", "\"unterminated"),
+                Arguments.of("Invalid String Escape", "\"invalid\\escape\""),
+                Arguments.of("Trailing Backslash", "\"abc\\"),
+                Arguments.of("Comparison", "!="),
+                Arguments.of("And", "&&"),
+                Arguments.of("Line Separator", "\u2028"),
+                Arguments.of("Non-ASCII", "\u00E9")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLex(String test, String input) {
+        compare(input, () -> new Lexer(input).lex(), () -> new TableLexer(input).lex());
+    }
+
+    private static Stream<Arguments> testLex() {
+        return Stream.of(
+                Arguments.of("Declaration", "LET x = 5;"),
+                Arguments.of("Print", "print(\"Hello, World!\");"),
+                Arguments.of("Whitespace", " \b\t\n\u000B\f\rx\r\n"),
+                Arguments.of("Function", "FUN main(): Integer DO\n    RETURN 0.5 * -1;\nEND"),
+                Arguments.of("Operators", "a != b == c && d <= e"),
+                Arguments.of("List", "LIST nums: Integer = [1, -2, 3.0];"),
+                Arguments.of("Unterminated String", "print(\"unterminated);")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testLex")
+    void testBuffer(String test, String input) {
+        compare(input, () -> new TableLexer(input).lex(), () -> {
+            TokenBuffer buffer = new TableLexer(input).lexBuffer();
+            List<Token> tokens = new ArrayList<>();
+            for (int i = 0; i < buffer.size(); i++) {
+                Assertions.assertTrue(buffer.matches(i, buffer.getLiteral(i)));
+                Assertions.assertEquals(buffer.get(i).getKind(), buffer.getKind(i));
+                tokens.add(buffer.get(i));
+            }
+            return tokens;
+        });
+    }
+
+    /**
+     * Compares both lexers on random inputs. The alphabet leaves out characters
+     * which never terminate in {@link Lexer}, such as {@code |}.
+     */
+    @Test
+    void testRandom() {
+        String alphabet = "abnLET019_@-.=!&;:()[],'\"\\ \t";
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String input = builder.toString();
+            compare(input, () -> new Lexer(input).lex(), () -> new TableLexer(input).lex());
+        }
+    }
+
+    /**
+     * Checks that lexing from a reader gives the same tokens as from a string,
+     * using an input longer than the reader buffer and a string token which
+     * does not fit in it.
+     */
+    @Test
+    void testReader() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("LET x").append(i).append(" = ").append(i).append(".5;\n");
+        }
+        for (int i = 0; i < 10000; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        builder.insert(builder.length() - 10000, '"').append("\" + 1;");
+        String input = builder.toString();
+        Assertions.assertEquals(new TableLexer(input).lex(), new TableLexer(new StringReader(input)).lex());
+    }
+
+    @Test
+    void testMapped() throws IOException {
+        String input = "FUN main(): Integer DO\n    print(\"h\u00E9llo\");\n    RETURN 0;\nEND";
+        Path path = Files.createTempFile("source", ".plc");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            List<Token> tokens = new TableLexer(MappedSource.map(path)).lex();
+            Assertions.assertEquals(new Token(Token.Type.STRING, "\"h\u00E9llo\"", 33), tokens.get(9));
+            tokens.remove(9);
+            List<Token> expected = new TableLexer(input).lex();
+            expected.remove(9);
+            for (int i = 9; i < expected.size(); i++) {
+                Token token = expected.get(i);
+                expected.set(i, new Token(token.getType(), token.getLiteral(), token.getIndex() + 1));
+            }
+            Assertions.assertEquals(expected, tokens);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testNoProgress() {
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new TableLexer("a || b").lex());
+        Assertions.assertEquals(2, exception.getIndex());
+        exception = Assertions.assertThrows(ParseException.class,
+                () -> new TableLexer("\"a\nb\"").lex());
+        Assertions.assertEquals(2, exception.getIndex());
+    }
+
+    private static void compare(String input, Supplier<Object> expected, Supplier<Object> actual) {
+        Object expectedResult;
+        try {
+            expectedResult = expected.get();
+        } catch (ParseException e) {
+            ParseException exception = Assertions.assertThrows(ParseException.class, actual::get, input);
+            Assertions.assertEquals(e.getIndex(), exception.getIndex(), input);
+            Assertions.assertEquals(e.getMessage(), exception.getMessage(), input);
+            return;
+        }
+        Assertions.assertEquals(expectedResult, actual.get(), input);
+    }
+
+}